@@ -0,0 +1,186 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** Content-addressed storage for file contents. Every distinct file
+ *  content is saved exactly once, named by the SHA-1 id of its bytes, so
+ *  commits and the stage only need to keep track of blob ids. New blobs
+ *  are written loose to the OBJECTS directory with the configured Codec
+ *  and moved into the Pack by gc. Files
+ *  are hashed and copied as raw bytes a buffer at a time, so binary
+ *  files are kept intact and a file is never held in memory as a whole.
+ *  @author Jennifer Tran
+ */
+public class Blob {
+
+    /** Saves CONTENTS in the OBJECTS directory if no blob with the same
+     *  contents exists yet, and returns its SHA-1 id String. */
+    public static String save(byte[] contents) {
+        String id = Utils.sha1(contents);
+        if (exists(id)) {
+            return id;
+        }
+        File temp = null;
+        try {
+            temp = File.createTempFile("blob", null, Repo.OBJECTS);
+            try (OutputStream out = Codec.create(temp)) {
+                out.write(contents);
+            }
+            place(temp, id);
+            return id;
+        } catch (IOException excp) {
+            if (temp != null) {
+                temp.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Saves the contents of the File F in the OBJECTS directory if no
+     *  blob with the same contents exists yet, and returns its SHA-1 id
+     *  String. The file is hashed while it is copied to a temporary
+     *  file, which is then renamed to its id. */
+    public static String save(File f) {
+        File temp = null;
+        try {
+            temp = File.createTempFile("blob", null, Repo.OBJECTS);
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            try (FileChannel in = FileChannel.open(f.toPath());
+                 OutputStream out = Codec.create(temp)) {
+                ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+                while (in.read(buf) != -1) {
+                    md.update(buf.array(), 0, buf.position());
+                    out.write(buf.array(), 0, buf.position());
+                    buf.clear();
+                }
+            }
+            String id = toHex(md.digest());
+            place(temp, id);
+            return id;
+        } catch (IOException | NoSuchAlgorithmException excp) {
+            if (temp != null) {
+                temp.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Renames the finished object file TEMP to the id String ID, or
+     *  deletes it if an object with that id already exists. */
+    private static void place(File temp, String id) throws IOException {
+        File dest = Utils.join(Repo.OBJECTS, id);
+        if (exists(id)) {
+            Files.delete(temp.toPath());
+        } else {
+            Files.move(temp.toPath(), dest.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /** Returns true if the blob with the SHA-1 id String ID is saved,
+     *  loose or packed. */
+    public static boolean exists(String id) {
+        return Utils.join(Repo.OBJECTS, id).exists() || Pack.contains(id);
+    }
+
+    /** Returns the SHA-1 id String of the contents of the File F without
+     *  saving it. */
+    public static String hash(File f) {
+        try (FileChannel in = FileChannel.open(f.toPath())) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (in.read(buf) != -1) {
+                buf.flip();
+                md.update(buf);
+                buf.clear();
+            }
+            return toHex(md.digest());
+        } catch (IOException | NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the contents of the blob with the SHA-1 id String ID. The
+     *  loose file is opened first and the Pack read only if it is gone,
+     *  so a blob that gc packs and deletes meanwhile is still found. */
+    public static byte[] read(String id) {
+        File loose = Utils.join(Repo.OBJECTS, id);
+        try (InputStream in = Codec.open(loose)) {
+            return in.readAllBytes();
+        } catch (FileNotFoundException excp) {
+            return Pack.read(id);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes the contents of the blob with the SHA-1 id String ID
+     *  to the File F, creating the directories above F if needed. An
+     *  uncompressed blob is copied through a channel transfer and a
+     *  compressed one is decoded a buffer at a time. A packed blob is
+     *  written by the Pack, which streams a large blob from the pack and
+     *  rebuilds a smaller one from its delta chain, if the loose file is
+     *  gone. */
+    public static void restore(String id, File f) {
+        File src = Utils.join(Repo.OBJECTS, id);
+        f.getParentFile().mkdirs();
+        try {
+            restoreLoose(src, f);
+        } catch (FileNotFoundException | NoSuchFileException excp) {
+            try {
+                Pack.restore(id, f);
+            } catch (IOException packExcp) {
+                throw new IllegalArgumentException(packExcp.getMessage());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes the contents of the loose blob file SRC to the File F. */
+    private static void restoreLoose(File src, File f) throws IOException {
+        if (Codec.of(src) == Codec.NONE) {
+            try (FileChannel in = FileChannel.open(src.toPath());
+                 FileChannel out = FileChannel.open(f.toPath(),
+                         StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                long pos = 1;
+                while (pos < size) {
+                    pos += in.transferTo(pos, size - pos, out);
+                }
+            }
+        } else {
+            try (InputStream in = Codec.open(src);
+                 OutputStream out = Files.newOutputStream(f.toPath())) {
+                in.transferTo(out);
+            }
+        }
+    }
+
+    /** Returns the hexadecimal numeral of the digest bytes DIGEST. */
+    static String toHex(byte[] digest) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    /** The number of bytes read or written at a time. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+}
@@ -0,0 +1,338 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+
+/** The commit catalog: the id, parents, time, generation number, date
+ *  and message of every commit, without its contents, so global-log and
+ *  find read it instead of deserializing every Commit. It is appended to
+ *  by every commit and rebuilt by gc.
+ *
+ *  The CATALOGFILE holds MAGIC and a random number, then a record of
+ *  RECORD bytes for each commit in the order they were made: its raw id,
+ *  the raw ids of its parent and its merged parent, or zeros, its time,
+ *  its generation number and the offset of its entry in the MESSAGEFILE.
+ *  The MESSAGEFILE starts with the same random number, followed by the
+ *  entries, each the length and UTF-8 bytes of the date and then of the
+ *  message. A message is always appended before its record, so a record
+ *  never points past the end of the MESSAGEFILE; a record cut short by a
+ *  crash is ignored, and cut off by the next writer. If the two random
+ *  numbers differ, or the CATALOGFILE is missing, the catalog is built
+ *  from the commits themselves in memory until gc writes it again.
+ *  @author Jennifer Tran
+ */
+class Catalog {
+
+    /** A Catalog over the bytes RECORDS of a catalog file and MESSAGES of
+     *  a message file. */
+    private Catalog(ByteBuffer records, ByteBuffer messages) {
+        _records = records;
+        _messages = messages;
+        _size = (records.limit() - HEADER) / RECORD;
+    }
+
+    /** Returns the Catalog of the CATALOGFILE and MESSAGEFILE, or one
+     *  built from the commits in STORE if they are missing or do not
+     *  belong together. */
+    static Catalog open(Store store) {
+        if (Repo.CATALOGFILE.isFile() && Repo.MESSAGEFILE.isFile()) {
+            ByteBuffer records = map(Repo.CATALOGFILE);
+            ByteBuffer messages = map(Repo.MESSAGEFILE);
+            if (records.limit() >= HEADER && messages.limit() >= NONCE
+                    && records.getInt(0) == MAGIC
+                    && records.getLong(4) == messages.getLong(0)) {
+                return new Catalog(records, messages);
+            }
+        }
+        byte[][] files = build(store);
+        return new Catalog(ByteBuffer.wrap(files[0]),
+                ByteBuffer.wrap(files[1]));
+    }
+
+    /** Returns the number of commits in the catalog. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the random number of the catalog, which changes whenever
+     *  it is written again. */
+    long nonce() {
+        return _records.getLong(4);
+    }
+
+    /** Returns the id of the commit at position POS. */
+    String id(int pos) {
+        return hex(HEADER + pos * RECORD);
+    }
+
+    /** Returns the id of the parent of the commit at position POS, or
+     *  null for the initial commit. */
+    String parent(int pos) {
+        return idOrNull(HEADER + pos * RECORD + ID_BYTES);
+    }
+
+    /** Returns the id of the merged parent of the commit at position POS,
+     *  or null if it is not a merge. */
+    String merged(int pos) {
+        return idOrNull(HEADER + pos * RECORD + 2 * ID_BYTES);
+    }
+
+    /** Returns the time of the commit at position POS, in milliseconds
+     *  since the epoch. */
+    long time(int pos) {
+        return _records.getLong(HEADER + pos * RECORD + 3 * ID_BYTES);
+    }
+
+    /** Returns the generation number of the commit at position POS. */
+    int generation(int pos) {
+        return _records.getInt(HEADER + pos * RECORD + 3 * ID_BYTES + 8);
+    }
+
+    /** Returns the date String of the commit at position POS. */
+    String date(int pos) {
+        return string(offset(pos));
+    }
+
+    /** Returns the message of the commit at position POS. */
+    String message(int pos) {
+        int at = offset(pos);
+        return string(at + 4 + _messages.getInt(at));
+    }
+
+    /** Returns the positions of all commits, newest first: by time, then
+     *  by generation number, and then by id, so the order is the same
+     *  every time. */
+    int[] byDate() {
+        Integer[] order = new Integer[_size];
+        for (int pos = 0; pos < _size; pos += 1) {
+            order[pos] = pos;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int cmp = Long.compare(time(b), time(a));
+            if (cmp == 0) {
+                cmp = Integer.compare(generation(b), generation(a));
+            }
+            if (cmp == 0) {
+                cmp = compareIds(a, b);
+            }
+            return cmp;
+        });
+        int[] positions = new int[_size];
+        for (int k = 0; k < _size; k += 1) {
+            positions[k] = order[k];
+        }
+        return positions;
+    }
+
+    /** Appends the Commit COMMIT to the catalog, or writes the whole
+     *  catalog from STORE, which already holds COMMIT, if there is none
+     *  to append to. */
+    static void append(Store store, Commit commit) {
+        if (!Repo.CATALOGFILE.isFile() || !Repo.MESSAGEFILE.isFile()) {
+            write(store);
+            return;
+        }
+        try (FileChannel records = FileChannel.open(
+                 Repo.CATALOGFILE.toPath(), StandardOpenOption.WRITE);
+             FileChannel messages = FileChannel.open(
+                 Repo.MESSAGEFILE.toPath(), StandardOpenOption.WRITE)) {
+            long offset = messages.size();
+            if (offset > Integer.MAX_VALUE) {
+                throw Utils.error("Message file too large.");
+            }
+            writeFully(messages, offset, ByteBuffer.wrap(entry(commit)));
+            long end = HEADER
+                + (records.size() - HEADER) / RECORD * RECORD;
+            if (records.size() != end) {
+                records.truncate(end);
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD);
+            putRecord(record, commit, (int) offset);
+            record.flip();
+            writeFully(records, end, record);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes the CATALOGFILE and MESSAGEFILE for every commit in STORE,
+     *  replacing them. */
+    static void write(Store store) {
+        byte[][] files = build(store);
+        Utils.writeContents(Repo.MESSAGEFILE, files[1]);
+        Utils.writeContents(Repo.CATALOGFILE, files[0]);
+    }
+
+    /** Returns the contents of a catalog file and of its message file
+     *  for every commit in STORE, oldest first. */
+    private static byte[][] build(Store store) {
+        List<String> ids = store.returnCommitIds();
+        Commit[] commits = new Commit[ids.size()];
+        for (int k = 0; k < commits.length; k += 1) {
+            commits[k] = store.returnCommit(ids.get(k));
+        }
+        Arrays.sort(commits, (a, b) -> {
+            int cmp = Integer.compare(a.returnGeneration(),
+                    b.returnGeneration());
+            return cmp != 0 ? cmp : Long.compare(a.returnTime(),
+                    b.returnTime());
+        });
+        long nonce = 0;
+        while (nonce == 0) {
+            nonce = RANDOM.nextLong();
+        }
+        ByteBuffer records = ByteBuffer.allocate(HEADER
+                + commits.length * RECORD);
+        records.putInt(MAGIC).putLong(nonce);
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        byte[] head = ByteBuffer.allocate(NONCE).putLong(nonce).array();
+        messages.write(head, 0, head.length);
+        for (Commit commit: commits) {
+            putRecord(records, commit, messages.size());
+            byte[] entry = entry(commit);
+            messages.write(entry, 0, entry.length);
+        }
+        return new byte[][] { records.array(), messages.toByteArray() };
+    }
+
+    /** Puts the record of COMMIT, whose message entry is at OFFSET, into
+     *  BUF. */
+    private static void putRecord(ByteBuffer buf, Commit commit,
+                                  int offset) {
+        buf.put(PackIndex.toBytes(commit.returnId()));
+        buf.put(rawOrZeros(commit.returnParentId()));
+        buf.put(rawOrZeros(commit.returnMergedId()));
+        buf.putLong(commit.returnTime());
+        buf.putInt(commit.returnGeneration());
+        buf.putInt(offset);
+    }
+
+    /** Returns the message entry of COMMIT. */
+    private static byte[] entry(Commit commit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (String str: new String[] {
+                    commit.returnDate(), commit.returnMsg() }) {
+                byte[] utf = str.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf.length);
+                out.write(utf);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the raw bytes of the id String ID, or zeros if it is
+     *  null. */
+    private static byte[] rawOrZeros(String id) {
+        return id == null ? new byte[ID_BYTES] : PackIndex.toBytes(id);
+    }
+
+    /** Writes all of BUF to CH at POSITION. */
+    private static void writeFully(FileChannel ch, long position,
+                                   ByteBuffer buf) throws IOException {
+        long at = position;
+        while (buf.hasRemaining()) {
+            at += ch.write(buf, at);
+        }
+    }
+
+    /** Returns the contents of FILE, mapped read-only. */
+    private static ByteBuffer map(File file) {
+        try (FileChannel ch = FileChannel.open(file.toPath())) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the offset of the message entry of the commit at position
+     *  POS. */
+    private int offset(int pos) {
+        return _records.getInt(HEADER + pos * RECORD + 3 * ID_BYTES + 12);
+    }
+
+    /** Returns the String stored at AT in _messages as its length and
+     *  UTF-8 bytes. */
+    private String string(int at) {
+        byte[] utf = new byte[_messages.getInt(at)];
+        ByteBuffer dup = _messages.duplicate();
+        dup.position(at + 4);
+        dup.get(utf);
+        return new String(utf, StandardCharsets.UTF_8);
+    }
+
+    /** Compares the ids of the commits at positions A and B, as unsigned
+     *  bytes. */
+    private int compareIds(int a, int b) {
+        for (int k = 0; k < ID_BYTES; k += 1) {
+            int cmp = Integer.compare(
+                    _records.get(HEADER + a * RECORD + k) & 0xff,
+                    _records.get(HEADER + b * RECORD + k) & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the raw id at AT in _records as a hexadecimal String, or
+     *  null if it is all zeros. */
+    private String idOrNull(int at) {
+        for (int k = 0; k < ID_BYTES; k += 1) {
+            if (_records.get(at + k) != 0) {
+                return hex(at);
+            }
+        }
+        return null;
+    }
+
+    /** Returns the raw id at AT in _records as a hexadecimal String. */
+    private String hex(int at) {
+        char[] str = new char[2 * ID_BYTES];
+        for (int k = 0; k < ID_BYTES; k += 1) {
+            int b = _records.get(at + k) & 0xff;
+            str[2 * k] = Character.forDigit(b >>> 4, 16);
+            str[2 * k + 1] = Character.forDigit(b & 0xf, 16);
+        }
+        return new String(str);
+    }
+
+    /** The first int of a catalog file. */
+    private static final int MAGIC = 0x4743544c;
+
+    /** The length of the random number that pairs the two files. */
+    private static final int NONCE = 8;
+
+    /** The number of bytes before the first record. */
+    private static final int HEADER = 4 + NONCE;
+
+    /** The number of bytes in a raw id. */
+    private static final int ID_BYTES = 20;
+
+    /** The number of bytes in the record of one commit. */
+    private static final int RECORD = 3 * ID_BYTES + 16;
+
+    /** Makes the random number of every catalog written. */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** The bytes of the catalog file. */
+    private final ByteBuffer _records;
+
+    /** The bytes of the message file. */
+    private final ByteBuffer _messages;
+
+    /** The number of commits in the catalog. */
+    private final int _size;
+
+}
@@ -0,0 +1,219 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** A compression format for saved objects. Every blob, Tree and Commit
+ *  file starts with one byte naming the Codec its remaining bytes were
+ *  written with, so a repository may hold objects written with different
+ *  Codecs. New objects are written with the Codec named by the
+ *  "compression" setting of the CONFIGFILE, which is "deflate" unless
+ *  changed. New Codecs are added to CODECS under an unused id.
+ *  @author Jennifer Tran
+ */
+abstract class Codec {
+
+    /** A Codec with the id byte ID and the name NAME. */
+    Codec(int id, String name) {
+        _id = id;
+        _name = name;
+    }
+
+    /** Returns a stream that writes the bytes written to it to OUT
+     *  encoded with this Codec. */
+    abstract OutputStream encode(OutputStream out);
+
+    /** Returns a stream that reads the bytes of IN decoded with this
+     *  Codec. */
+    abstract InputStream decode(InputStream in);
+
+    /** Returns the id byte of this Codec. */
+    int returnId() {
+        return _id;
+    }
+
+    /** Returns the name of this Codec used in the CONFIGFILE. */
+    String returnName() {
+        return _name;
+    }
+
+    /** Stores the bytes as they are. */
+    static final Codec NONE = new Codec(0, "none") {
+        @Override
+        OutputStream encode(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        InputStream decode(InputStream in) {
+            return in;
+        }
+    };
+
+    /** Compresses the bytes with a Deflater. */
+    static final Codec DEFLATE = new Codec(1, "deflate") {
+        @Override
+        OutputStream encode(OutputStream out) {
+            return new DeflaterOutputStream(out,
+                    new Deflater(Deflater.DEFAULT_COMPRESSION), BUFFER_SIZE);
+        }
+
+        @Override
+        InputStream decode(InputStream in) {
+            return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE);
+        }
+    };
+
+    /** Every known Codec, indexed by its id byte. */
+    private static final Codec[] CODECS = { NONE, DEFLATE };
+
+    /** Returns the Codec named NAME. */
+    static Codec named(String name) {
+        for (Codec codec: CODECS) {
+            if (codec.returnName().equals(name)) {
+                return codec;
+            }
+        }
+        throw Utils.error("Unknown compression: %s", name);
+    }
+
+    /** Returns the Codec with the id byte ID. */
+    static Codec withId(int id) {
+        if (id < 0 || id >= CODECS.length) {
+            throw Utils.error("Unknown compression id: %d", id);
+        }
+        return CODECS[id];
+    }
+
+    /** Returns the Codec new objects are written with, as set in the
+     *  CONFIGFILE. The CONFIGFILE is read again whenever it has changed
+     *  since it was last read. */
+    static synchronized Codec configured() {
+        String stamp = Utils.stamp(Repo.CONFIGFILE);
+        if (_configured == null || !stamp.equals(_stamp)) {
+            _stamp = stamp;
+            Properties config = new Properties();
+            if (Repo.CONFIGFILE.exists()) {
+                try (InputStream in = new FileInputStream(Repo.CONFIGFILE)) {
+                    config.load(in);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+            _configured = named(config.getProperty("compression",
+                    DEFLATE.returnName()));
+        }
+        return _configured;
+    }
+
+    /** Writes a CONFIGFILE that sets the compression to the Codec
+     *  CODEC. */
+    static void writeConfig(Codec codec) {
+        Properties config = new Properties();
+        config.setProperty("compression", codec.returnName());
+        try (OutputStream out = new FileOutputStream(Repo.CONFIGFILE)) {
+            config.store(out, "Gitlet repository settings");
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _configured = codec;
+    }
+
+    /** Returns a stream that writes an object to the File F with the
+     *  configured Codec, after its id byte. */
+    static OutputStream create(File f) throws IOException {
+        Codec codec = configured();
+        OutputStream out =
+            new BufferedOutputStream(new FileOutputStream(f), BUFFER_SIZE);
+        out.write(codec.returnId());
+        return codec.encode(out);
+    }
+
+    /** Returns a stream that reads the decoded bytes of the object saved
+     *  in the File F. */
+    static InputStream open(File f) throws IOException {
+        InputStream in =
+            new BufferedInputStream(new FileInputStream(f), BUFFER_SIZE);
+        int id = in.read();
+        if (id < 0) {
+            in.close();
+            throw Utils.error("Empty object file: %s", f.getName());
+        }
+        return withId(id).decode(in);
+    }
+
+    /** Returns the Codec the object saved in the File F was written
+     *  with. */
+    static Codec of(File f) throws IOException {
+        try (InputStream in = new FileInputStream(f)) {
+            return withId(in.read());
+        }
+    }
+
+    /** Saves OBJ to the File F with the configured Codec. OBJ is written
+     *  to a temporary file that is then renamed to F, so F is never seen
+     *  half written. */
+    static void writeObject(File f, Serializable obj) {
+        File temp = null;
+        try {
+            temp = File.createTempFile("object", ".tmp", f.getParentFile());
+            try (OutputStream out = create(temp)) {
+                ObjectOutputStream objectStream = new ObjectOutputStream(out);
+                objectStream.writeObject(obj);
+                objectStream.flush();
+            }
+            Utils.replace(temp, f);
+        } catch (IOException excp) {
+            if (temp != null) {
+                temp.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns an object of type T read from the File F, casting it to
+     *  EXPECTEDCLASS, or null if there is no File F. */
+    static <T extends Serializable> T readObject(File f,
+                                                 Class<T> expectedClass) {
+        try (ObjectInputStream in = new ObjectInputStream(open(f))) {
+            return expectedClass.cast(in.readObject());
+        } catch (FileNotFoundException excp) {
+            return null;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The size of the buffers used by the Codec streams. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** The Codec new objects are written with, or null until the
+     *  CONFIGFILE has been read. */
+    private static Codec _configured;
+
+    /** The stamp of the CONFIGFILE when it was last read. */
+    private static String _stamp;
+
+    /** The id byte of this Codec. */
+    private final int _id;
+
+    /** The name of this Codec. */
+    private final String _name;
+
+}
@@ -3,8 +3,9 @@ package gitlet;
 import java.io.Serializable;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.TreeMap;
 
 /** Commit class for Gitlet.
  *  @author Jennifer Tran
@@ -12,13 +13,21 @@ import java.util.HashMap;
 
 public class Commit implements Serializable {
 
-    /** Creates a new Commit. Takes in a Commit MSG, a HashMap of
-     *  CONTENT, and a Commit PARENT. */
-    public Commit(String msg, HashMap<String, String> content, Commit parent) {
+    /** Creates a new Commit. Takes in a Commit MSG, the id TREE of the
+     *  Tree of its content, its PARENT Commit and, for a merge, the
+     *  MERGED Commit of the branch merged in, which is null otherwise. */
+    public Commit(String msg, String tree, Commit parent, Commit merged) {
         _msg = msg;
-        _content = content;
-        _parent = parent;
+        _tree = tree;
+        _parentId = parent.returnId();
+        _generation = parent.returnGeneration() + 1;
+        if (merged != null) {
+            _mergedId = merged.returnId();
+            _generation = Math.max(_generation,
+                    merged.returnGeneration() + 1);
+        }
         Date date = new Date();
+        _time = date.getTime();
         String datePattern = "E MMM dd HH:mm:ss yyyy Z";
         DateFormat dateFormat = new SimpleDateFormat(datePattern);
         _date = dateFormat.format(date);
@@ -28,29 +37,35 @@ public class Commit implements Serializable {
     /** Creates an initial Commit. Takes in a Commit MSG. */
     public Commit(String msg) {
         _msg = msg;
-        _content = new HashMap<>();
-        _parent = null;
+        _tree = null;
+        _parentId = null;
+        _generation = 1;
         _date = "Thu Jan 1 00:00:00 1970 +0000";
         _id = createHashId();
     }
 
     /** Returns a unique SHA-1 id String for a commit based on the commit
-     *  message, content, parent, and date. */
+     *  message, content, parent, and time. The content is hashed through
+     *  the id of its Tree, which is itself a hash of its sorted entries,
+     *  the time as milliseconds since the epoch rather than the date
+     *  String, which depends on the time zone and locale, and every field
+     *  is labelled and terminated, so equal commits get equal ids on every
+     *  JVM. */
     public String createHashId() {
-        String content;
-        String parent;
-        if (_content == null) {
-            content = "";
-        } else {
-            content = _content.toString();
+        ArrayList<Object> vals = new ArrayList<>();
+        vals.add("commit\n");
+        if (_parentId != null) {
+            vals.add("parent " + _parentId + "\n");
+        }
+        if (_mergedId != null) {
+            vals.add("parent " + _mergedId + "\n");
         }
-        if (_parent == null) {
-            parent = "";
-        } else {
-            parent = _parent.toString();
+        vals.add("time " + _time + "\n");
+        if (_tree != null) {
+            vals.add("tree " + _tree + "\n");
         }
-        String all = _msg + content + parent + _date;
-        return Utils.sha1(all);
+        vals.add("\n" + _msg);
+        return Utils.sha1(vals);
     }
 
     /** Returns the Commit's unique SHA-1 id String. */
@@ -58,14 +73,47 @@ public class Commit implements Serializable {
         return _id;
     }
 
-    /** Returns the Commit's content HashMap. */
-    public HashMap<String, String> returnContent() {
+    /** Returns the id of the Tree of the Commit's content, or null if the
+     *  Commit tracks no files. */
+    public String returnTree() {
+        return _tree;
+    }
+
+    /** Returns the Commit's content as a TreeMap from the path of every
+     *  tracked file to its blob id. The Trees are only read the first
+     *  time it is asked for. */
+    public TreeMap<String, String> returnContent() {
+        if (_content == null) {
+            _content = Tree.flatten(_tree);
+        }
         return _content;
     }
 
-    /** Returns the current Commit's parent Commit. */
-    public Commit returnParent() {
-        return _parent;
+    /** Returns the SHA-1 id String of the current Commit's parent, or
+     *  null for the initial commit. The parent itself is loaded through
+     *  Store.returnParent only when it is needed. */
+    public String returnParentId() {
+        return _parentId;
+    }
+
+    /** Returns the SHA-1 id String of the second parent of a merge
+     *  Commit, the head of the branch that was merged in, or null if the
+     *  Commit is not a merge. */
+    public String returnMergedId() {
+        return _mergedId;
+    }
+
+    /** Returns the generation number of the Commit: 1 for the initial
+     *  commit, and otherwise one more than the largest generation number
+     *  of its parents. Every ancestor of a Commit has a smaller one. */
+    public int returnGeneration() {
+        return _generation;
+    }
+
+    /** Returns the time the Commit was made, in milliseconds since the
+     *  epoch. */
+    public long returnTime() {
+        return _time;
     }
 
     /** Returns the current Commit's date String. */
@@ -78,20 +126,34 @@ public class Commit implements Serializable {
         return _msg;
     }
 
-    /** The current Commit's date string. */
+    /** The current Commit's date string, which is only displayed. */
     private String _date;
 
+    /** The time the current Commit was made, in milliseconds since the
+     *  epoch. */
+    private long _time;
+
     /** The current Commit's commit message String. */
     private String _msg;
 
-    /** A HashMap of the current commit's content that saves the file name
-     *  as the key and the content as the value. */
-    private HashMap<String, String> _content;
+    /** The id of the Tree of the current commit's content. */
+    private String _tree;
+
+    /** A TreeMap of the current commit's content that saves the file path
+     *  as the key and the SHA-1 id of its Blob as the value. Read from
+     *  the Tree on demand and never written to the commit file. */
+    private transient TreeMap<String, String> _content;
 
     /** The current commit's SHA-1 id String. */
     private String _id;
 
-    /** The current Commit's parent commit. */
-    private Commit _parent;
+    /** The SHA-1 id of the current Commit's parent commit. */
+    private String _parentId;
+
+    /** The SHA-1 id of the second parent of a merge commit, or null. */
+    private String _mergedId;
+
+    /** The generation number of the current Commit. */
+    private int _generation;
 
 }
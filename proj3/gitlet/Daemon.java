@@ -0,0 +1,212 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/** A long-running Gitlet process that takes commands over the Unix
+ *  domain socket SOCKETFILE, so that a command costs neither a JVM start
+ *  nor reading the repository state cold. Main forwards every command
+ *  to the Daemon when one is running and runs it itself otherwise.
+ *
+ *  Commands run one at a time, in the order they arrive. Sessions are
+ *  kept warm between them, and every warm object is read again once its
+ *  file changes on disk, so commands run by other processes are seen.
+ *
+ *  A client sends the number of its arguments followed by each of them.
+ *  The Daemon answers with the output of the command as frames of a tag
+ *  byte, OUT or ERR, a length and that many bytes, ended by an END byte.
+ *  @author Jennifer Tran
+ */
+class Daemon {
+
+    /** Serves commands until the SOCKETFILE is removed, as when the
+     *  repository is deleted, or a client asks the Daemon to stop. */
+    static void serve() {
+        Session.keepWarm();
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+             Selector selector = Selector.open()) {
+            Files.deleteIfExists(Repo.SOCKETFILE.toPath());
+            server.bind(address());
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            boolean serving = true;
+            while (serving && Repo.SOCKETFILE.exists()) {
+                selector.select(IDLE_MILLIS);
+                selector.selectedKeys().clear();
+                SocketChannel client = server.accept();
+                if (client == null) {
+                    continue;
+                }
+                try (client) {
+                    client.configureBlocking(true);
+                    serving = handle(client);
+                } catch (IOException excp) {
+                    continue;
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot serve on %s: %s",
+                    Repo.SOCKETFILE.getName(), excp.getMessage());
+        } finally {
+            Repo.SOCKETFILE.delete();
+        }
+    }
+
+    /** Runs the command ARGS on a running Daemon, copying its output to
+     *  the standard output and error. Returns false, having run nothing,
+     *  if no Daemon is running. */
+    static boolean forward(String... args) {
+        if (!Repo.SOCKETFILE.exists()) {
+            return false;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(address());
+        } catch (IOException excp) {
+            return false;
+        }
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(args.length);
+            for (String arg: args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+            for (int tag = in.readByte(); tag != END; tag = in.readByte()) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                (tag == ERR ? System.err : System.out).write(bytes);
+            }
+        } catch (IOException excp) {
+            Utils.message("Lost the connection to the daemon.");
+        }
+        System.out.flush();
+        System.err.flush();
+        return true;
+    }
+
+    /** Runs the command sent by CLIENT with the standard output and
+     *  error sent back to it. A command that fails unexpectedly sends
+     *  CLIENT a one-line message, as Main prints, and leaves its stack
+     *  trace on the standard error of the Daemon. Returns false if CLIENT
+     *  asked the Daemon to stop. */
+    private static boolean handle(SocketChannel client) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(client)));
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i += 1) {
+            args[i] = in.readUTF();
+        }
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(client)));
+        PrintStream stdout = new PrintStream(new Frames(out, OUT), true);
+        PrintStream stderr = new PrintStream(new Frames(out, ERR), true);
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        System.setOut(stdout);
+        System.setErr(stderr);
+        boolean serving = true;
+        try {
+            if (args.length == 2 && args[0].equals("daemon")
+                    && args[1].equals("stop")) {
+                Utils.message("Daemon stopped.");
+                serving = false;
+            } else if (args.length > 0 && args[0].equals("daemon")) {
+                Utils.message("A daemon is already running.");
+            } else {
+                Main.run(args);
+            }
+        } catch (RuntimeException excp) {
+            excp.printStackTrace(oldErr);
+            Utils.message("%s", excp.getMessage() == null ? excp.toString()
+                    : excp.getMessage());
+        } finally {
+            stdout.flush();
+            stderr.flush();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            Session.settle();
+        }
+        out.writeByte(END);
+        out.flush();
+        return serving;
+    }
+
+    /** Returns the address of the SOCKETFILE. It is relative to the
+     *  working directory, where both the Daemon and its clients run,
+     *  because socket paths are limited to about a hundred bytes. */
+    private static UnixDomainSocketAddress address() {
+        return UnixDomainSocketAddress.of(Paths.get(Repo.WDIR)
+                .relativize(Repo.SOCKETFILE.toPath()));
+    }
+
+    /** An OutputStream that sends everything written to it as frames
+     *  with one tag. */
+    private static class Frames extends OutputStream {
+
+        /** Frames with the tag TAG, written to OUT. */
+        Frames(DataOutputStream out, int tag) {
+            _out = out;
+            _tag = tag;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len)
+            throws IOException {
+            if (len > 0) {
+                _out.writeByte(_tag);
+                _out.writeInt(len);
+                _out.write(bytes, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _out.flush();
+        }
+
+        /** The stream the frames are written to. */
+        private final DataOutputStream _out;
+
+        /** The tag of every frame. */
+        private final int _tag;
+
+    }
+
+    /** The tag of a frame of standard output. */
+    private static final int OUT = 1;
+
+    /** The tag of a frame of standard error. */
+    private static final int ERR = 2;
+
+    /** The tag that ends the output of a command. */
+    private static final int END = 0;
+
+    /** How long the Daemon waits for a client before checking that the
+     *  SOCKETFILE still exists, in milliseconds. */
+    private static final long IDLE_MILLIS = 1000;
+
+}
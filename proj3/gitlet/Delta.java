@@ -0,0 +1,169 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+
+/** Delta encoding of one byte array against another, used to pack similar
+ *  blobs. A delta is a sequence of instructions that rebuild the target
+ *  from the base: copy a range of the base, or insert literal bytes. The
+ *  base is indexed by the hash of every BLOCK-byte block, and the target
+ *  is scanned with a rolling hash of the same width to find matches.
+ *  @author Jennifer Tran
+ */
+class Delta {
+
+    /** Returns a delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeInt(out, base.length);
+        writeInt(out, target.length);
+        HashMap<Integer, Integer> blocks = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(hash(base, i), i);
+        }
+        int start = 0;
+        int i = 0;
+        int h = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (i + BLOCK <= target.length) {
+            Integer at = blocks.get(h);
+            int len = 0;
+            if (at != null) {
+                while (at + len < base.length && i + len < target.length
+                        && base[at + len] == target[i + len]) {
+                    len += 1;
+                }
+            }
+            if (len >= BLOCK) {
+                int back = 0;
+                while (back < i - start && back < at
+                        && base[at - back - 1] == target[i - back - 1]) {
+                    back += 1;
+                }
+                insert(out, target, start, i - back);
+                copy(out, at - back, len + back);
+                i += len;
+                start = i;
+                if (i + BLOCK <= target.length) {
+                    h = hash(target, i);
+                }
+            } else {
+                if (i + BLOCK < target.length) {
+                    h = roll(h, target[i], target[i + BLOCK]);
+                }
+                i += 1;
+            }
+        }
+        insert(out, target, start, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the target rebuilt by applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = { 0 };
+        int baseLength = readInt(delta, pos);
+        if (baseLength != base.length) {
+            throw Utils.error("Delta does not match its base.");
+        }
+        byte[] target = new byte[readInt(delta, pos)];
+        int t = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]];
+            pos[0] += 1;
+            if (op == COPY) {
+                int offset = readInt(delta, pos);
+                int len = readInt(delta, pos);
+                System.arraycopy(base, offset, target, t, len);
+                t += len;
+            } else {
+                int len = readInt(delta, pos);
+                System.arraycopy(delta, pos[0], target, t, len);
+                pos[0] += len;
+                t += len;
+            }
+        }
+        return target;
+    }
+
+    /** Writes an instruction to OUT that inserts BYTES[FROM..TO). */
+    private static void insert(ByteArrayOutputStream out, byte[] bytes,
+                               int from, int to) {
+        if (from < to) {
+            out.write(INSERT);
+            writeInt(out, to - from);
+            out.write(bytes, from, to - from);
+        }
+    }
+
+    /** Writes an instruction to OUT that copies LEN bytes of the base
+     *  starting at OFFSET. */
+    private static void copy(ByteArrayOutputStream out, int offset,
+                             int len) {
+        out.write(COPY);
+        writeInt(out, offset);
+        writeInt(out, len);
+    }
+
+    /** Returns the hash of the BLOCK bytes of BYTES starting at FROM. */
+    private static int hash(byte[] bytes, int from) {
+        int h = 0;
+        for (int k = 0; k < BLOCK; k += 1) {
+            h = h * PRIME + (bytes[from + k] & 0xff);
+        }
+        return h;
+    }
+
+    /** Returns the hash H of a block moved forward by one byte, dropping
+     *  the byte OUT and adding the byte IN. */
+    private static int roll(int h, byte out, byte in) {
+        return (h - (out & 0xff) * TOP) * PRIME + (in & 0xff);
+    }
+
+    /** Writes the non-negative N to OUT as a variable-length integer. */
+    private static void writeInt(ByteArrayOutputStream out, int n) {
+        while (n >= 0x80) {
+            out.write((n & 0x7f) | 0x80);
+            n >>>= 7;
+        }
+        out.write(n);
+    }
+
+    /** Returns the variable-length integer of BYTES at POS[0] and moves
+     *  POS[0] past it. */
+    private static int readInt(byte[] bytes, int[] pos) {
+        int n = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = bytes[pos[0]] & 0xff;
+            pos[0] += 1;
+            n |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b >= 0x80);
+        return n;
+    }
+
+    /** The width in bytes of the hashed blocks, and the shortest copy. */
+    private static final int BLOCK = 16;
+
+    /** The multiplier of the rolling hash. */
+    private static final int PRIME = 31;
+
+    /** PRIME raised to the power BLOCK - 1, the weight of the byte that
+     *  leaves the rolling hash. */
+    private static final int TOP;
+
+    static {
+        int top = 1;
+        for (int k = 1; k < BLOCK; k += 1) {
+            top *= PRIME;
+        }
+        TOP = top;
+    }
+
+    /** The instruction that copies a range of the base. */
+    private static final int COPY = 0;
+
+    /** The instruction that inserts literal bytes. */
+    private static final int INSERT = 1;
+
+}
@@ -0,0 +1,155 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Compares the working directory and its subdirectories, the Stage and
+ *  the head Commit of a Session in one pass. The file names of all three
+ *  are sorted and then swept together like a sorted merge, so every file
+ *  is looked at once.
+ *  Used by status to list unstaged changes and untracked files, and by
+ *  checkout and reset to find untracked files in the way.
+ *  @author Jennifer Tran
+ */
+public class Diff {
+
+    /** Sweeps the working directory, Stage and head Commit of SESSION. */
+    public Diff(Session session) {
+        _session = session;
+        Stage stage = session.returnStage();
+        TreeMap<String, String> head =
+            session.returnHeadCommit().returnContent();
+        TreeMap<String, String> added = new TreeMap<>(stage.returnAdd());
+        TreeSet<String> removed = new TreeSet<>(stage.returnRm().keySet());
+        List<String> wdir = WorkTree.files();
+
+        _untracked = new TreeSet<>();
+        _expected = new TreeMap<>();
+        _deleted = new TreeSet<>();
+        Cursor w = new Cursor(wdir);
+        Cursor a = new Cursor(added.keySet());
+        Cursor h = new Cursor(head.keySet());
+        Cursor r = new Cursor(removed);
+        while (!w.done() || !a.done() || !h.done()) {
+            String name = min(min(w.peek(), a.peek()), h.peek());
+            boolean inWdir = w.take(name);
+            boolean inAdd = a.take(name);
+            boolean inHead = h.take(name);
+            boolean inRm = r.take(name);
+            if (inWdir) {
+                if (inAdd) {
+                    _expected.put(name, added.get(name));
+                } else if (inHead && !inRm) {
+                    _expected.put(name, head.get(name));
+                } else {
+                    _untracked.add(name);
+                }
+            } else if (inAdd || (inHead && !inRm)) {
+                _deleted.add(name);
+            }
+        }
+    }
+
+    /** Returns the sorted names of files in the working directory that
+     *  are neither staged for addition nor tracked, including files that
+     *  are staged for removal but were re-created. */
+    public TreeSet<String> returnUntracked() {
+        return _untracked;
+    }
+
+    /** Returns true if the working file FILENAME is untracked. */
+    public boolean isUntracked(String fileName) {
+        return _untracked.contains(fileName);
+    }
+
+    /** Returns a TreeMap from the name of every file changed in the
+     *  working directory but not staged to "modified" or "deleted".
+     *  Only files whose stat data differs from the Index are read, and
+     *  those are hashed in parallel. */
+    public TreeMap<String, String> returnChanged() {
+        if (_changed == null) {
+            _changed = new TreeMap<>();
+            TreeMap<String, String> actual =
+                _session.returnIndex().hashAll(_expected.keySet());
+            for (String name: _expected.keySet()) {
+                if (!actual.get(name).equals(_expected.get(name))) {
+                    _changed.put(name, "modified");
+                }
+            }
+            for (String name: _deleted) {
+                _changed.put(name, "deleted");
+            }
+        }
+        return _changed;
+    }
+
+    /** Returns the smaller of the names A and B, where null stands for
+     *  a sequence that is used up. */
+    private static String min(String a, String b) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        }
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    /** A position in a sorted sequence of file names. */
+    private static class Cursor {
+
+        /** A Cursor at the start of the sorted NAMES. */
+        Cursor(Collection<String> names) {
+            _names = new ArrayList<>(names);
+        }
+
+        /** Returns true if every name has been taken. */
+        boolean done() {
+            return _pos == _names.size();
+        }
+
+        /** Returns the next name, or null if every name has been taken. */
+        String peek() {
+            return done() ? null : _names.get(_pos);
+        }
+
+        /** Moves past every name up to NAME and returns true if NAME
+         *  was one of them. */
+        boolean take(String name) {
+            while (!done() && _names.get(_pos).compareTo(name) < 0) {
+                _pos += 1;
+            }
+            if (!done() && _names.get(_pos).equals(name)) {
+                _pos += 1;
+                return true;
+            }
+            return false;
+        }
+
+        /** The sorted names. */
+        private final ArrayList<String> _names;
+
+        /** The index of the next name. */
+        private int _pos;
+    }
+
+    /** The Session whose Index is used to hash working files. */
+    private final Session _session;
+
+    /** Sorted names of untracked working files. */
+    private final TreeSet<String> _untracked;
+
+    /** Working files that are tracked or staged, with the blob id their
+     *  contents should have. */
+    private final TreeMap<String, String> _expected;
+
+    /** Files that are tracked or staged but missing from the working
+     *  directory. */
+    private final TreeSet<String> _deleted;
+
+    /** The unstaged changes, or null until they are first asked for. */
+    private TreeMap<String, String> _changed;
+
+}
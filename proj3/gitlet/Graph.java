@@ -0,0 +1,240 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.List;
+
+/** The commit graph: the parents, tree, time and generation number of
+ *  every commit, kept in the GRAPHFILE and read through a
+ *  MappedByteBuffer, so that walking the history does not deserialize a
+ *  single Commit. It is written by gc, and covers the commits that
+ *  existed then; commits made later are read as Commits.
+ *
+ *  The file holds MAGIC, the number N of commits, a fan-out table of 256
+ *  ints as in the PackIndex, the N ids as 20 raw bytes each in sorted
+ *  order, then a record of RECORD bytes for each commit in the same
+ *  order: the raw id of its tree, or zeros if it has none, the positions
+ *  of its parent and of its merged parent, or -1, its generation number
+ *  and its time.
+ *  @author Jennifer Tran
+ */
+class Graph {
+
+    /** A Graph over the bytes mapped from a graph file, BUF. */
+    private Graph(MappedByteBuffer buf) {
+        _buf = buf;
+        if (_buf.getInt(0) != MAGIC) {
+            throw Utils.error("Not a commit graph.");
+        }
+        _size = _buf.getInt(4);
+        _ids = HEADER + FANOUT * 4;
+        _records = _ids + _size * ID_BYTES;
+    }
+
+    /** An empty Graph, used when there is no graph file. */
+    private Graph() {
+        _buf = null;
+        _size = 0;
+        _ids = _records = 0;
+    }
+
+    /** Returns the Graph of the GRAPHFILE, mapping the file again
+     *  whenever it has changed since it was last mapped. */
+    static synchronized Graph open() {
+        String stamp = Utils.stamp(Repo.GRAPHFILE);
+        if (_open == null || !stamp.equals(_stamp)) {
+            _stamp = stamp;
+            if (!Repo.GRAPHFILE.exists()) {
+                _open = new Graph();
+            } else {
+                try (FileChannel ch = FileChannel.open(
+                        Repo.GRAPHFILE.toPath())) {
+                    _open = new Graph(
+                        ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+        return _open;
+    }
+
+    /** Returns the number of commits in the graph. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the position of the commit with the id String ID in the
+     *  graph, or -1 if it is not there. */
+    int find(String id) {
+        if (id == null || id.length() != Utils.UID_LENGTH || _size == 0
+                || !PackIndex.isHex(id)) {
+            return -1;
+        }
+        byte[] key = PackIndex.toBytes(id);
+        int b = key[0] & 0xff;
+        int lo = b == 0 ? 0 : _buf.getInt(HEADER + (b - 1) * 4);
+        int hi = _buf.getInt(HEADER + b * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(_ids + mid * ID_BYTES, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the id of the commit at position POS. */
+    String id(int pos) {
+        return hex(_ids + pos * ID_BYTES);
+    }
+
+    /** Returns the id of the tree of the commit at position POS, or null
+     *  if it has none. */
+    String tree(int pos) {
+        int at = _records + pos * RECORD;
+        for (int k = 0; k < ID_BYTES; k += 1) {
+            if (_buf.get(at + k) != 0) {
+                return hex(at);
+            }
+        }
+        return null;
+    }
+
+    /** Returns the position of the parent of the commit at position POS,
+     *  or -1 for the initial commit. */
+    int parent(int pos) {
+        return _buf.getInt(_records + pos * RECORD + ID_BYTES);
+    }
+
+    /** Returns the position of the merged parent of the commit at
+     *  position POS, or -1 if it is not a merge. */
+    int merged(int pos) {
+        return _buf.getInt(_records + pos * RECORD + ID_BYTES + 4);
+    }
+
+    /** Returns the generation number of the commit at position POS. */
+    int generation(int pos) {
+        return _buf.getInt(_records + pos * RECORD + ID_BYTES + 8);
+    }
+
+    /** Returns the time of the commit at position POS, in milliseconds
+     *  since the epoch. */
+    long time(int pos) {
+        return _buf.getLong(_records + pos * RECORD + ID_BYTES + 12);
+    }
+
+    /** Writes the GRAPHFILE for every commit in the Store STORE. */
+    static void write(Store store) {
+        List<String> ids = store.returnCommitIds();
+        int[] fanout = new int[FANOUT];
+        for (String id: ids) {
+            fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+        }
+        for (int b = 1; b < FANOUT; b += 1) {
+            fanout[b] += fanout[b - 1];
+        }
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + FANOUT * 4
+                + ids.size() * (ID_BYTES + RECORD));
+        buf.putInt(MAGIC).putInt(ids.size());
+        for (int count: fanout) {
+            buf.putInt(count);
+        }
+        for (String id: ids) {
+            buf.put(PackIndex.toBytes(id));
+        }
+        for (String id: ids) {
+            Commit commit = store.returnCommit(id);
+            if (commit.returnTree() == null) {
+                buf.put(new byte[ID_BYTES]);
+            } else {
+                buf.put(PackIndex.toBytes(commit.returnTree()));
+            }
+            buf.putInt(position(ids, commit.returnParentId()));
+            buf.putInt(position(ids, commit.returnMergedId()));
+            buf.putInt(commit.returnGeneration());
+            buf.putLong(commit.returnTime());
+        }
+        Utils.writeContents(Repo.GRAPHFILE, buf.array());
+    }
+
+    /** Returns the position of the id String ID in the sorted IDS, or -1
+     *  if ID is null. */
+    private static int position(List<String> ids, String id) {
+        if (id == null) {
+            return -1;
+        }
+        int pos = Collections.binarySearch(ids, id);
+        if (pos < 0) {
+            throw Utils.error("Missing parent commit %s.", id);
+        }
+        return pos;
+    }
+
+    /** Compares the raw id at position AT in _buf with KEY, as unsigned
+     *  bytes. */
+    private int compare(int at, byte[] key) {
+        for (int k = 0; k < ID_BYTES; k += 1) {
+            int cmp = Integer.compare(_buf.get(at + k) & 0xff,
+                    key[k] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the raw id at position AT in _buf as a hexadecimal
+     *  String. */
+    private String hex(int at) {
+        char[] str = new char[2 * ID_BYTES];
+        for (int k = 0; k < ID_BYTES; k += 1) {
+            int b = _buf.get(at + k) & 0xff;
+            str[2 * k] = Character.forDigit(b >>> 4, 16);
+            str[2 * k + 1] = Character.forDigit(b & 0xf, 16);
+        }
+        return new String(str);
+    }
+
+    /** The first int of a graph file. */
+    private static final int MAGIC = 0x47475048;
+
+    /** The number of bytes before the fan-out table. */
+    private static final int HEADER = 8;
+
+    /** The number of entries in the fan-out table. */
+    private static final int FANOUT = 256;
+
+    /** The number of bytes in a raw id. */
+    private static final int ID_BYTES = 20;
+
+    /** The number of bytes in the record of one commit. */
+    private static final int RECORD = ID_BYTES + 20;
+
+    /** The Graph last opened, or null. */
+    private static Graph _open;
+
+    /** The stamp of the GRAPHFILE when _open was mapped. */
+    private static String _stamp;
+
+    /** The mapped bytes of the graph file. */
+    private final MappedByteBuffer _buf;
+
+    /** The number of commits in the graph. */
+    private final int _size;
+
+    /** The position in _buf of the first id. */
+    private final int _ids;
+
+    /** The position in _buf of the first record. */
+    private final int _records;
+
+}
@@ -0,0 +1,189 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** A cache of the stat data of working files, in the spirit of git's
+ *  index. For every file it has hashed it remembers the size, the last
+ *  modification time and the blob id, so a file whose size and time have
+ *  not changed since is not read again. Is the object stored in the
+ *  INDEXFILE.
+ *  @author Jennifer Tran
+ */
+public class Index implements Serializable {
+
+    /** Initializes an empty Index. */
+    public Index() {
+        _entries = new HashMap<>();
+    }
+
+    /** Returns a TreeMap from each of the working files FILENAMES to its
+     *  blob id String. The files are checked against their cached
+     *  entries and hashed if needed on a ForkJoinPool, several at a
+     *  time, and the results are then recorded in order on the calling
+     *  thread, so the result does not depend on how the work was
+     *  split. */
+    public TreeMap<String, String> hashAll(Collection<String> fileNames) {
+        String[] names = fileNames.toArray(new String[0]);
+        long[] sizes = new long[names.length];
+        long[] times = new long[names.length];
+        String[] ids = new String[names.length];
+        POOL.invoke(new HashTask(names, sizes, times, ids, 0,
+                names.length));
+        TreeMap<String, String> result = new TreeMap<>();
+        for (int i = 0; i < names.length; i += 1) {
+            record(names[i], sizes[i], times[i], ids[i]);
+            result.put(names[i], ids[i]);
+        }
+        return result;
+    }
+
+    /** Hashes a range of working files in parallel, splitting it in
+     *  half until it is at most SPLIT files long. */
+    private class HashTask extends RecursiveAction {
+
+        /** A HashTask over NAMES[FROM..TO) that stores the size, time and
+         *  blob id of each file at the same position of SIZES, TIMES and
+         *  IDS. */
+        HashTask(String[] names, long[] sizes, long[] times, String[] ids,
+                 int from, int to) {
+            _names = names;
+            _sizes = sizes;
+            _times = times;
+            _ids = ids;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from <= SPLIT) {
+                for (int i = _from; i < _to; i += 1) {
+                    File f = Utils.join(Repo.WDIR, _names[i]);
+                    _sizes[i] = f.length();
+                    _times[i] = f.lastModified();
+                    Entry entry = _entries.get(_names[i]);
+                    if (entry != null && entry._size == _sizes[i]
+                            && entry._time == _times[i]) {
+                        _ids[i] = entry._id;
+                    } else {
+                        _ids[i] = Blob.hash(f);
+                    }
+                }
+            } else {
+                int mid = (_from + _to) >>> 1;
+                invokeAll(new HashTask(_names, _sizes, _times, _ids,
+                                _from, mid),
+                        new HashTask(_names, _sizes, _times, _ids,
+                                mid, _to));
+            }
+        }
+
+        /** The names of all files being hashed. */
+        private final String[] _names;
+
+        /** The sizes of the files, filled in by position. */
+        private final long[] _sizes;
+
+        /** The modification times of the files, filled in by position. */
+        private final long[] _times;
+
+        /** The blob ids of the files, filled in by position. */
+        private final String[] _ids;
+
+        /** The first position of this task's range. */
+        private final int _from;
+
+        /** The position after the last one of this task's range. */
+        private final int _to;
+    }
+
+    /** Records that the working file FILENAME now holds the blob with
+     *  the id String ID, as after a checkout wrote it. */
+    public void record(String fileName, String id) {
+        File f = Utils.join(Repo.WDIR, fileName);
+        record(fileName, f.length(), f.lastModified(), id);
+    }
+
+    /** Forgets the entry of the working file FILENAME. */
+    public void remove(String fileName) {
+        if (_entries.remove(fileName) != null) {
+            _changed = true;
+        }
+    }
+
+    /** Returns true if this Index has changed since it was read or
+     *  last written. */
+    public boolean changed() {
+        return _changed;
+    }
+
+    /** Marks this Index as written to the INDEXFILE. */
+    void written() {
+        _changed = false;
+    }
+
+    /** Records the SIZE, the modification TIME and the blob ID of the
+     *  working file FILENAME. A file modified within RACY_MILLIS of now
+     *  could still change without its size or time changing, so it is
+     *  not cached until a later command sees it again. */
+    private void record(String fileName, long size, long time, String id) {
+        if (System.currentTimeMillis() - time < RACY_MILLIS) {
+            remove(fileName);
+            return;
+        }
+        Entry old = _entries.get(fileName);
+        if (old == null || old._size != size || old._time != time
+                || !old._id.equals(id)) {
+            _entries.put(fileName, new Entry(size, time, id));
+            _changed = true;
+        }
+    }
+
+    /** The stat data and blob id of one working file. */
+    private static class Entry implements Serializable {
+
+        /** An Entry for a file of SIZE bytes last modified at TIME whose
+         *  contents have the blob id ID. */
+        Entry(long size, long time, String id) {
+            _size = size;
+            _time = time;
+            _id = id;
+        }
+
+        /** The size of the file in bytes. */
+        private final long _size;
+
+        /** The last modification time of the file in milliseconds. */
+        private final long _time;
+
+        /** The blob id of the file contents. */
+        private final String _id;
+    }
+
+    /** The pool that hashes working files, with one thread per
+     *  processor. */
+    private static final ForkJoinPool POOL =
+        new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /** The largest number of files a HashTask hashes without splitting. */
+    private static final int SPLIT = 16;
+
+    /** How recently a file may have been modified, in milliseconds, and
+     *  still not be trusted by its stat data. */
+    private static final long RACY_MILLIS = 2000;
+
+    /** A HashMap that takes the file name as the key and its Entry as
+     *  the value. */
+    private HashMap<String, Entry> _entries;
+
+    /** True if an entry was added, changed or removed since this Index
+     *  was read. Never written to the INDEXFILE. */
+    private transient boolean _changed;
+
+}
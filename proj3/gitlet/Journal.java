@@ -0,0 +1,275 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/** The append-only JOURNALFILE of new commits and ref updates. A commit
+ *  appends its Commit and the new refs here instead of writing a commit
+ *  file and rewriting the REFSFILE, so it costs the same however long
+ *  the history is. Whatever is in the JOURNALFILE is newer than the
+ *  COMMITS directory and the REFSFILE, and is replayed over them when
+ *  the repository is read.
+ *
+ *  The JOURNALFILE starts with MAGIC and a random number that is new
+ *  whenever the file is created, so a replaced journal is always told
+ *  apart from the one read before. Every record after that is its
+ *  length, the CRC-32 of its payload and the
+ *  payload: an op byte, then for a COMMIT the id of the commit and its
+ *  serialized bytes, and for REFS the serialized Store. A record that is
+ *  cut short or fails its checksum was torn by a crash. Replay stops at
+ *  it, and the next writer truncates it away before appending.
+ *
+ *  Once the JOURNALFILE passes COMPACT_BYTES, it is compacted: every
+ *  commit in it is written to the COMMITS directory, the last refs to
+ *  the REFSFILE, and the JOURNALFILE is replaced by an empty one.
+ *  Only a command holding the Lock appends to or compacts the journal.
+ *  @author Jennifer Tran
+ */
+class Journal {
+
+    /** Appends the Commit COMMIT with the SHA-1 id String ID. */
+    static void appendCommit(String id, Commit commit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(COMMIT);
+            out.writeUTF(id);
+            out.write(Utils.serialize(commit));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        append(bytes.toByteArray());
+    }
+
+    /** Appends the refs held by the Store STORE, compacting the journal
+     *  afterwards if it has grown past COMPACT_BYTES. */
+    static void appendRefs(Store store) {
+        byte[] refs = Utils.serialize(store);
+        byte[] payload = new byte[refs.length + 1];
+        payload[0] = REFS;
+        System.arraycopy(refs, 0, payload, 1, refs.length);
+        append(payload);
+        if (_valid > COMPACT_BYTES) {
+            compact();
+        }
+    }
+
+    /** Returns the latest refs in the journal, or null if it holds
+     *  none. */
+    static Store returnRefs() {
+        replay();
+        if (_refs == null) {
+            return null;
+        }
+        return Utils.deserialize(_refs, Store.class);
+    }
+
+    /** Returns the Commit with the SHA-1 id String ID from the journal,
+     *  or null if it is not there. */
+    static Commit returnCommit(String id) {
+        replay();
+        byte[] bytes = _commits.get(id);
+        if (bytes == null) {
+            return null;
+        }
+        return Utils.deserialize(bytes, Commit.class);
+    }
+
+    /** Returns the sorted ids of the commits in the journal. */
+    static NavigableSet<String> returnCommitIds() {
+        replay();
+        return _commits.navigableKeySet();
+    }
+
+    /** Returns true if the journal holds the commit with the SHA-1 id
+     *  String ID. */
+    static boolean contains(String id) {
+        replay();
+        return _commits.containsKey(id);
+    }
+
+    /** Moves everything in the journal into the COMMITS directory and
+     *  the REFSFILE and empties it. A crash part way only leaves records
+     *  that are replayed, and compacted, again. */
+    static void compact() {
+        replay();
+        for (Map.Entry<String, byte[]> e: _commits.entrySet()) {
+            File f = Utils.join(Repo.COMMITS, e.getKey());
+            if (!f.isFile()) {
+                Codec.writeObject(f,
+                        Utils.deserialize(e.getValue(), Commit.class));
+            }
+        }
+        if (_refs != null) {
+            Utils.writeContents(Repo.REFSFILE, _refs);
+        }
+        if (Repo.JOURNALFILE.exists()) {
+            create();
+        }
+        replay();
+    }
+
+    /** Appends a record of PAYLOAD, first cutting off any torn record
+     *  left at the end by a crash. */
+    private static void append(byte[] payload) {
+        replay();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue())
+            .put(payload).flip();
+        if (_nonce == 0) {
+            create();
+            replay();
+        }
+        try (FileChannel out = FileChannel.open(Repo.JOURNALFILE.toPath(),
+                StandardOpenOption.WRITE)) {
+            if (out.size() != _valid) {
+                out.truncate(_valid);
+            }
+            out.position(_valid);
+            while (record.hasRemaining()) {
+                out.write(record);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        apply(payload);
+        _valid += HEADER + payload.length;
+        _stamp = Utils.stamp(Repo.JOURNALFILE);
+    }
+
+    /** Replaces the JOURNALFILE with an empty journal. */
+    private static void create() {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+        long nonce = 0;
+        while (nonce == 0) {
+            nonce = RANDOM.nextLong();
+        }
+        header.putInt(MAGIC).putLong(nonce);
+        Utils.writeContents(Repo.JOURNALFILE, header.array());
+    }
+
+    /** Reads the records appended to the JOURNALFILE since it was last
+     *  read, or all of them if it has been replaced since, up to the
+     *  first torn record. */
+    private static void replay() {
+        String stamp = Utils.stamp(Repo.JOURNALFILE);
+        if (stamp.equals(_stamp)) {
+            return;
+        }
+        try (RandomAccessFile in =
+                 new RandomAccessFile(Repo.JOURNALFILE, "r")) {
+            long end = in.length();
+            long nonce = 0;
+            if (end >= FILE_HEADER && in.readInt() == MAGIC) {
+                nonce = in.readLong();
+            }
+            if (nonce == 0 || nonce != _nonce || end < _valid) {
+                reset();
+                _nonce = nonce;
+            }
+            if (nonce != 0) {
+                in.seek(_valid);
+                while (_valid + HEADER <= end) {
+                    int length = in.readInt();
+                    int sum = in.readInt();
+                    if (length < 1 || _valid + HEADER + length > end) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != sum) {
+                        break;
+                    }
+                    apply(payload);
+                    _valid += HEADER + length;
+                }
+            }
+        } catch (FileNotFoundException excp) {
+            reset();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _stamp = stamp;
+    }
+
+    /** Applies the record PAYLOAD to what has been replayed so far. */
+    private static void apply(byte[] payload) {
+        if (payload[0] == COMMIT) {
+            int length = ((payload[1] & 0xff) << 8) | (payload[2] & 0xff);
+            String id = new String(payload, 3, length,
+                    StandardCharsets.UTF_8);
+            byte[] commit = new byte[payload.length - 3 - length];
+            System.arraycopy(payload, 3 + length, commit, 0, commit.length);
+            _commits.put(id, commit);
+        } else if (payload[0] == REFS) {
+            _refs = new byte[payload.length - 1];
+            System.arraycopy(payload, 1, _refs, 0, _refs.length);
+        } else {
+            throw Utils.error("Unknown journal record: %d", payload[0]);
+        }
+    }
+
+    /** Forgets everything replayed so far. */
+    private static void reset() {
+        _commits = new TreeMap<>();
+        _refs = null;
+        _nonce = 0;
+        _valid = FILE_HEADER;
+    }
+
+    /** The op byte of a record holding a Commit. */
+    private static final byte COMMIT = 1;
+
+    /** The op byte of a record holding the refs. */
+    private static final byte REFS = 2;
+
+    /** The first four bytes of a JOURNALFILE. */
+    private static final int MAGIC = 0x474a524e;
+
+    /** The length of MAGIC and the random number of the JOURNALFILE. */
+    private static final int FILE_HEADER = 12;
+
+    /** The length of the header of a record. */
+    private static final int HEADER = 8;
+
+    /** The size past which the journal is compacted, in bytes. */
+    private static final long COMPACT_BYTES = 1 << 20;
+
+    /** Makes the random number of every new JOURNALFILE. */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** The serialized commits replayed so far, by id. */
+    private static TreeMap<String, byte[]> _commits = new TreeMap<>();
+
+    /** The serialized Store of the latest refs replayed, or null. */
+    private static byte[] _refs;
+
+    /** The random number of the JOURNALFILE replayed so far, or 0 if
+     *  there is none. */
+    private static long _nonce;
+
+    /** The length of the header and the records replayed so far, in
+     *  bytes. */
+    private static long _valid = FILE_HEADER;
+
+    /** The stamp of the JOURNALFILE when it was last replayed, or
+     *  null. */
+    private static String _stamp;
+
+}
@@ -0,0 +1,62 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+
+/** An exclusive lock on the LOCKFILE, held by a command that changes the
+ *  repository from before it reads the repository state until after it
+ *  has written it back. Commands that change the repository therefore
+ *  run one after another, even from different processes, and none of
+ *  them is lost. Every state file is replaced by an atomic rename, so
+ *  commands that only read, such as log and find, see either the old
+ *  or the new file and never take the lock. Status takes it only to
+ *  write back the Index it refreshed.
+ *  @author Jennifer Tran
+ */
+class Lock implements AutoCloseable {
+
+    /** A Lock holding LOCK on the file open in CHANNEL. */
+    private Lock(FileChannel channel, FileLock lock) {
+        _channel = channel;
+        _lock = lock;
+    }
+
+    /** Returns the Lock on the LOCKFILE, waiting until no other process
+     *  holds it. Throws OverlappingFileLockException if this process
+     *  already holds it. */
+    static Lock acquire() {
+        try {
+            FileChannel channel = FileChannel.open(Repo.LOCKFILE.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                return new Lock(channel, channel.lock());
+            } catch (IOException | OverlappingFileLockException excp) {
+                channel.close();
+                throw excp;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Releases this Lock. */
+    @Override
+    public void close() {
+        try {
+            _lock.release();
+            _channel.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The channel of the LOCKFILE. */
+    private final FileChannel _channel;
+
+    /** The lock held on _channel. */
+    private final FileLock _lock;
+
+}
@@ -1,13 +1,34 @@
 package gitlet;
 
+import java.util.Set;
+
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Jennifer Tran
  */
 public class Main {
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+     *  <COMMAND> <OPERAND> .... The command is run by the Daemon of the
+     *  repository if one is running, and by this process otherwise. */
     public static void main(String... args) {
+        if (args.length > 0 && Daemon.forward(args)) {
+            return;
+        }
+        run(args);
+    }
+
+    /** Runs the command ARGS in this process, printing the message of
+     *  any GitletException it stops with. */
+    static void run(String... args) {
+        try {
+            dispatch(args);
+        } catch (GitletException excp) {
+            Utils.message(excp.getMessage());
+        }
+    }
+
+    /** Calls the Repo method for the command ARGS. */
+    private static void dispatch(String... args) {
         if (args.length == 0) {
             Utils.message("Please enter a command.");
             return;
@@ -16,41 +37,12 @@ public class Main {
             operandsCheck(args, 1);
             new Repo();
         } else if (Repo.GIT.exists()) {
-            if (args[0].equals("add")) {
-                operandsCheck(args, 2);
-                Repo.add(args);
-            } else if (args[0].equals("commit")) {
-                operandsCheck(args, 2);
-                Repo.commit(args);
-            } else if (args[0].equals("rm")) {
-                operandsCheck(args, 2);
-                Repo.rm(args);
-            } else if (args[0].equals("log")) {
-                operandsCheck(args, 1);
-                Repo.log();
-            } else if (args[0].equals("global-log")) {
-                operandsCheck(args, 1);
-                Repo.globalLog();
-            } else if (args[0].equals("find")) {
-                operandsCheck(args, 2);
-                Repo.find(args);
-            } else if (args[0].equals("status")) {
-                operandsCheck(args, 1);
-                Repo.status();
-            } else if (args[0].equals("checkout")) {
-                callCheckout(args);
-            } else if (args[0].equals("branch")) {
-                operandsCheck(args, 2);
-                Repo.branch(args);
-            } else if (args[0].equals("rm-branch")) {
-                operandsCheck(args, 2);
-                Repo.rmbranch(args);
-            } else if (args[0].equals("reset")) {
-                operandsCheck(args, 2);
-                Repo.reset(args);
+            if (UNLOCKED.contains(args[0])) {
+                command(args);
             } else {
-                Utils.message("No command with that name exists.");
-                return;
+                try (Lock lock = Lock.acquire()) {
+                    command(args);
+                }
             }
         } else {
             Utils.message("Not in an initialized Gitlet directory.");
@@ -58,12 +50,80 @@ public class Main {
         }
     }
 
+    /** Calls the Repo method for the command ARGS in an initialized
+     *  Gitlet directory. */
+    private static void command(String... args) {
+        if (args[0].equals("add")) {
+            minOperandsCheck(args, 2);
+            Repo.add(args);
+        } else if (args[0].equals("commit")) {
+            operandsCheck(args, 2);
+            Repo.commit(args);
+        } else if (args[0].equals("rm")) {
+            operandsCheck(args, 2);
+            Repo.rm(args);
+        } else if (args[0].equals("log")) {
+            Repo.log(args);
+        } else if (args[0].equals("global-log")) {
+            operandsCheck(args, 1);
+            Repo.globalLog();
+        } else if (args[0].equals("find")) {
+            minOperandsCheck(args, 2);
+            Repo.find(args);
+        } else if (args[0].equals("status")) {
+            operandsCheck(args, 1);
+            Repo.status();
+        } else if (args[0].equals("checkout")) {
+            callCheckout(args);
+        } else if (args[0].equals("branch")) {
+            operandsCheck(args, 2);
+            Repo.branch(args);
+        } else if (args[0].equals("rm-branch")) {
+            operandsCheck(args, 2);
+            Repo.rmbranch(args);
+        } else if (args[0].equals("reset")) {
+            operandsCheck(args, 2);
+            Repo.reset(args);
+        } else if (args[0].equals("merge")) {
+            operandsCheck(args, 2);
+            Repo.merge(args);
+        } else if (args[0].equals("gc")) {
+            operandsCheck(args, 1);
+            Repo.gc();
+        } else if (args[0].equals("daemon")) {
+            callDaemon(args);
+        } else {
+            Utils.message("No command with that name exists.");
+            return;
+        }
+    }
+
     /** Checks if there are the correct number of operands when given
      *  a String[] ARGS and an int I. */
     public static void operandsCheck(String[] args, int i) {
         if (args.length != i) {
-            Utils.message("Incorrect operands.");
-            System.exit(0);
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+
+    /** Checks if there are at least I operands when given a String[]
+     *  ARGS and an int I. */
+    public static void minOperandsCheck(String[] args, int i) {
+        if (args.length < i) {
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+
+    /** Serves commands as the Daemon of this repository, given the
+     *  String[] ARGS "daemon". Since a running Daemon answers "daemon
+     *  stop" itself, reaching here with it means none is running. */
+    public static void callDaemon(String... args) {
+        if (args.length == 1) {
+            Daemon.serve();
+        } else if (args.length == 2 && args[1].equals("stop")) {
+            Utils.message("No daemon is running.");
+        } else {
+            throw Utils.error("Incorrect operands.");
         }
     }
 
@@ -77,9 +137,15 @@ public class Main {
         } else if (args.length == 4) {
             Repo.checkout(args);
         } else {
-            Utils.message("Incorrect operands.");
-            System.exit(0);
+            throw Utils.error("Incorrect operands.");
         }
     }
 
+    /** The commands that run without the Lock: those that only read the
+     *  repository, status, which takes the Lock only to write back its
+     *  Index, and the daemon command. Every other command holds the Lock
+     *  while it runs. */
+    private static final Set<String> UNLOCKED = Set.of("log", "global-log",
+            "find", "status", "daemon");
+
 }
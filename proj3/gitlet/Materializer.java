@@ -0,0 +1,150 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Writes the files of a commit into the working directory for checkout
+ *  and reset. Files are deleted and then written by at most IO_THREADS
+ *  threads at a time, so the latency of many small file operations
+ *  overlaps without flooding the disk. The time spent in each phase is
+ *  printed to the standard error when the GITLET_TIMINGS environment
+ *  variable is set.
+ *  @author Jennifer Tran
+ */
+class Materializer {
+
+    /** A Materializer for the working directory of SESSION. */
+    Materializer(Session session) {
+        _session = session;
+        _timings = new StringBuilder();
+    }
+
+    /** Returns true if any of the working files PATHS is untracked
+     *  according to DIFF, which means it would be overwritten. */
+    boolean blocked(Collection<String> paths, Diff diff) {
+        long start = System.nanoTime();
+        boolean blocked = false;
+        for (String path: paths) {
+            if (diff.isUntracked(path)) {
+                blocked = true;
+                break;
+            }
+        }
+        time("check", paths.size(), start);
+        return blocked;
+    }
+
+    /** Deletes the working files PATHS and forgets them in the Index. */
+    void delete(List<String> paths) {
+        long start = System.nanoTime();
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (List<String> batch: batches(paths)) {
+            tasks.add(() -> {
+                for (String path: batch) {
+                    WorkTree.delete(path);
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+        Index index = _session.returnIndex();
+        for (String path: paths) {
+            index.remove(path);
+        }
+        time("delete", paths.size(), start);
+    }
+
+    /** Writes FILES, a map from each working path to the id of the blob
+     *  it should hold, and records them in the Index. */
+    void write(Map<String, String> files) {
+        long start = System.nanoTime();
+        ArrayList<String> paths = new ArrayList<>(files.keySet());
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (List<String> batch: batches(paths)) {
+            tasks.add(() -> {
+                for (String path: batch) {
+                    Blob.restore(files.get(path), WorkTree.file(path));
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+        time("write", paths.size(), start);
+        start = System.nanoTime();
+        Index index = _session.returnIndex();
+        for (String path: paths) {
+            index.record(path, files.get(path));
+        }
+        time("index", paths.size(), start);
+    }
+
+    /** Prints the time of every phase so far for COMMAND to the standard
+     *  error, if the GITLET_TIMINGS environment variable is set. */
+    void report(String command) {
+        if (System.getenv("GITLET_TIMINGS") != null) {
+            System.err.println(command + ":" + _timings);
+        }
+    }
+
+    /** Runs TASKS on at most IO_THREADS threads and waits for all of
+     *  them. */
+    private static void runAll(List<Callable<Void>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Math.min(IO_THREADS, tasks.size()));
+        try {
+            for (Future<Void> done: pool.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted while writing files.");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalArgumentException(excp.getCause().getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Returns PATHS split into consecutive batches of at most BATCH
+     *  paths. */
+    private static List<List<String>> batches(List<String> paths) {
+        ArrayList<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i += BATCH) {
+            batches.add(paths.subList(i, Math.min(paths.size(), i + BATCH)));
+        }
+        return batches;
+    }
+
+    /** Records that the phase NAME handled COUNT files since START, in
+     *  nanoseconds. */
+    private void time(String name, int count, long start) {
+        _timings.append(String.format(" %s %d files %.1fms;", name, count,
+                (System.nanoTime() - start) / 1e6));
+    }
+
+    /** The largest number of threads writing or deleting files at once. */
+    static final int IO_THREADS = 8;
+
+    /** The number of files handed to a thread at a time. */
+    private static final int BATCH = 32;
+
+    /** The Session whose working directory is written. */
+    private final Session _session;
+
+    /** The timings of the phases so far. */
+    private final StringBuilder _timings;
+
+}
@@ -0,0 +1,357 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/** The inverted index of commit messages used by find, kept in the
+ *  MESSAGEINDEX. It maps every distinct message to the positions in the
+ *  Catalog of the commits that have it, and every token of a message, a
+ *  run of letters and digits, to the distinct messages that contain it.
+ *  Messages are read from the Catalog, never from a Commit.
+ *
+ *  The index covers the first commits of the Catalog it was built from,
+ *  whose random number it records; the commits appended after those are
+ *  checked one by one. Every commit brings it up to date once more than
+ *  PENDING commits are left uncovered, and gc rebuilds it.
+ *
+ *  The file holds MAGIC, the random number of the Catalog, the number of
+ *  commits covered, and the numbers M of messages, T of tokens, P of
+ *  commit postings and Q of message postings. Then come M message
+ *  entries sorted by message, each the position of a commit with that
+ *  message and the start and count of its commits in the commit
+ *  postings; T token entries sorted by token, each the offset and length
+ *  of the token in the token bytes and the start and count of its
+ *  messages in the message postings; the P commit positions; the Q
+ *  message numbers; and the UTF-8 bytes of the tokens.
+ *  @author Jennifer Tran
+ */
+class MessageIndex {
+
+    /** A MessageIndex over the bytes BUF of an index file. */
+    private MessageIndex(ByteBuffer buf) {
+        _buf = buf;
+        _covered = buf.getInt(12);
+        _messages = buf.getInt(16);
+        _tokens = buf.getInt(20);
+        _tokenEntries = HEADER + _messages * MESSAGE_ENTRY;
+        _commitPostings = _tokenEntries + _tokens * TOKEN_ENTRY;
+        _messagePostings = _commitPostings + buf.getInt(24) * 4;
+        _tokenBytes = _messagePostings + buf.getInt(28) * 4;
+    }
+
+    /** An empty MessageIndex, which covers no commits. */
+    private MessageIndex() {
+        _buf = null;
+        _covered = _messages = _tokens = 0;
+        _tokenEntries = _commitPostings = _messagePostings = _tokenBytes = 0;
+    }
+
+    /** Returns the MessageIndex of the MESSAGEINDEX if it was built from
+     *  CATALOG, and otherwise an empty one. */
+    static MessageIndex open(Catalog catalog) {
+        if (Repo.MESSAGEINDEX.isFile()) {
+            try (FileChannel ch = FileChannel.open(
+                    Repo.MESSAGEINDEX.toPath())) {
+                ByteBuffer buf =
+                    ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                if (buf.limit() >= HEADER && buf.getInt(0) == MAGIC
+                        && buf.getLong(4) == catalog.nonce()
+                        && buf.getInt(12) <= catalog.size()) {
+                    return new MessageIndex(buf);
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return new MessageIndex();
+    }
+
+    /** Rebuilds the MESSAGEINDEX from the Catalog of STORE if more than
+     *  PENDING of its commits are not covered by it. */
+    static void update(Store store) {
+        Catalog catalog = Catalog.open(store);
+        if (catalog.size() - open(catalog)._covered > PENDING) {
+            write(catalog);
+        }
+    }
+
+    /** Returns the sorted ids of the commits in CATALOG whose message is
+     *  MSG. */
+    List<String> findExact(Catalog catalog, String msg) {
+        BitSet found = new BitSet();
+        int lo = 0;
+        int hi = _messages - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = message(catalog, mid).compareTo(msg);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                found.set(mid);
+                break;
+            }
+        }
+        return find(catalog, found, msg::equals);
+    }
+
+    /** Returns the sorted ids of the commits in CATALOG whose message
+     *  contains TEXT. Only the messages that hold every token TEXT
+     *  requires are read: a token of TEXT with a separator on both sides
+     *  must be a whole token of the message, and one with a separator
+     *  only before it the start of one. */
+    List<String> findSubstring(Catalog catalog, String text) {
+        BitSet found = new BitSet();
+        found.set(0, _messages);
+        int start = -1;
+        for (int k = 0; k <= text.length(); k += 1) {
+            boolean word = k < text.length()
+                && Character.isLetterOrDigit(text.charAt(k));
+            if (word && start < 0) {
+                start = k;
+            } else if (!word && start >= 0) {
+                String token = text.substring(start, k);
+                if (start > 0 && k < text.length()) {
+                    found.and(tokens(token, false, false));
+                } else if (start > 0) {
+                    found.and(tokens(token, true, false));
+                } else if (k == text.length()) {
+                    found.and(tokens(token, true, true));
+                }
+                start = -1;
+            }
+        }
+        return find(catalog, found, msg -> msg.contains(text));
+    }
+
+    /** Returns the sorted ids of the commits in CATALOG whose message
+     *  holds a match of the regular expression PATTERN. */
+    List<String> findRegex(Catalog catalog, Pattern pattern) {
+        BitSet all = new BitSet();
+        all.set(0, _messages);
+        return find(catalog, all, msg -> pattern.matcher(msg).find());
+    }
+
+    /** Returns the sorted ids of the commits in CATALOG whose message
+     *  passes TEST, among those of the messages numbered in CANDIDATES
+     *  and those not covered by this index. */
+    private List<String> find(Catalog catalog, BitSet candidates,
+                              Predicate<String> test) {
+        ArrayList<String> ids = new ArrayList<>();
+        for (int m = candidates.nextSetBit(0); m >= 0;
+             m = candidates.nextSetBit(m + 1)) {
+            if (test.test(message(catalog, m))) {
+                int at = HEADER + m * MESSAGE_ENTRY;
+                int first = _buf.getInt(at + 4);
+                int count = _buf.getInt(at + 8);
+                for (int k = 0; k < count; k += 1) {
+                    ids.add(catalog.id(
+                        _buf.getInt(_commitPostings + (first + k) * 4)));
+                }
+            }
+        }
+        for (int pos = _covered; pos < catalog.size(); pos += 1) {
+            if (test.test(catalog.message(pos))) {
+                ids.add(catalog.id(pos));
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    /** Returns the numbers of the messages that hold a token equal to
+     *  TOKEN, or starting with it if PREFIX, or containing it if
+     *  INFIX. */
+    private BitSet tokens(String token, boolean prefix, boolean infix) {
+        BitSet found = new BitSet();
+        if (infix) {
+            for (int t = 0; t < _tokens; t += 1) {
+                if (token(t).contains(token)) {
+                    addMessages(t, found);
+                }
+            }
+            return found;
+        }
+        int lo = 0;
+        int hi = _tokens;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (token(mid).compareTo(token) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int t = lo; t < _tokens; t += 1) {
+            String str = token(t);
+            if (prefix ? !str.startsWith(token) : !str.equals(token)) {
+                break;
+            }
+            addMessages(t, found);
+        }
+        return found;
+    }
+
+    /** Adds the numbers of the messages holding the token numbered T to
+     *  FOUND. */
+    private void addMessages(int t, BitSet found) {
+        int at = _tokenEntries + t * TOKEN_ENTRY;
+        int first = _buf.getInt(at + 8);
+        int count = _buf.getInt(at + 12);
+        for (int k = 0; k < count; k += 1) {
+            found.set(_buf.getInt(_messagePostings + (first + k) * 4));
+        }
+    }
+
+    /** Returns the message numbered M, read from CATALOG. */
+    private String message(Catalog catalog, int m) {
+        return catalog.message(_buf.getInt(HEADER + m * MESSAGE_ENTRY));
+    }
+
+    /** Returns the token numbered T. */
+    private String token(int t) {
+        int at = _tokenEntries + t * TOKEN_ENTRY;
+        byte[] utf = new byte[_buf.getInt(at + 4)];
+        ByteBuffer dup = _buf.duplicate();
+        dup.position(_tokenBytes + _buf.getInt(at));
+        dup.get(utf);
+        return new String(utf, StandardCharsets.UTF_8);
+    }
+
+    /** Writes the MESSAGEINDEX for every commit in CATALOG. */
+    static void write(Catalog catalog) {
+        TreeMap<String, List<Integer>> messages = new TreeMap<>();
+        for (int pos = 0; pos < catalog.size(); pos += 1) {
+            messages.computeIfAbsent(catalog.message(pos),
+                k -> new ArrayList<>()).add(pos);
+        }
+        TreeMap<String, List<Integer>> tokens = new TreeMap<>();
+        int m = 0;
+        for (String msg: messages.keySet()) {
+            for (String token: tokenize(msg)) {
+                List<Integer> holders =
+                    tokens.computeIfAbsent(token, k -> new ArrayList<>());
+                int last = holders.size() - 1;
+                if (last < 0 || holders.get(last) != m) {
+                    holders.add(m);
+                }
+            }
+            m += 1;
+        }
+        ArrayList<byte[]> utfs = new ArrayList<>();
+        int tokenBytes = 0;
+        int messagePostings = 0;
+        for (Map.Entry<String, List<Integer>> e: tokens.entrySet()) {
+            byte[] utf = e.getKey().getBytes(StandardCharsets.UTF_8);
+            utfs.add(utf);
+            tokenBytes += utf.length;
+            messagePostings += e.getValue().size();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(HEADER
+                + messages.size() * MESSAGE_ENTRY
+                + tokens.size() * TOKEN_ENTRY + catalog.size() * 4
+                + messagePostings * 4 + tokenBytes);
+        buf.putInt(MAGIC).putLong(catalog.nonce()).putInt(catalog.size())
+            .putInt(messages.size()).putInt(tokens.size())
+            .putInt(catalog.size()).putInt(messagePostings);
+        int first = 0;
+        for (List<Integer> positions: messages.values()) {
+            buf.putInt(positions.get(0)).putInt(first)
+                .putInt(positions.size());
+            first += positions.size();
+        }
+        int offset = 0;
+        first = 0;
+        int t = 0;
+        for (List<Integer> holders: tokens.values()) {
+            buf.putInt(offset).putInt(utfs.get(t).length).putInt(first)
+                .putInt(holders.size());
+            offset += utfs.get(t).length;
+            first += holders.size();
+            t += 1;
+        }
+        for (List<Integer> positions: messages.values()) {
+            for (int pos: positions) {
+                buf.putInt(pos);
+            }
+        }
+        for (List<Integer> holders: tokens.values()) {
+            for (int holder: holders) {
+                buf.putInt(holder);
+            }
+        }
+        for (byte[] utf: utfs) {
+            buf.put(utf);
+        }
+        Utils.writeContents(Repo.MESSAGEINDEX, buf.array());
+    }
+
+    /** Returns the tokens of MSG, the runs of letters and digits in it,
+     *  in order. */
+    private static List<String> tokenize(String msg) {
+        ArrayList<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int k = 0; k <= msg.length(); k += 1) {
+            boolean word = k < msg.length()
+                && Character.isLetterOrDigit(msg.charAt(k));
+            if (word && start < 0) {
+                start = k;
+            } else if (!word && start >= 0) {
+                tokens.add(msg.substring(start, k));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /** The first int of a message index file. */
+    private static final int MAGIC = 0x474d5358;
+
+    /** The number of bytes before the first message entry. */
+    private static final int HEADER = 32;
+
+    /** The number of bytes in the entry of one message. */
+    private static final int MESSAGE_ENTRY = 12;
+
+    /** The number of bytes in the entry of one token. */
+    private static final int TOKEN_ENTRY = 16;
+
+    /** The number of commits left uncovered past which a commit
+     *  rebuilds the index. */
+    private static final int PENDING = 256;
+
+    /** The bytes of the index file. */
+    private final ByteBuffer _buf;
+
+    /** The number of commits of the Catalog that the index covers. */
+    private final int _covered;
+
+    /** The number of distinct messages. */
+    private final int _messages;
+
+    /** The number of distinct tokens. */
+    private final int _tokens;
+
+    /** The position in _buf of the first token entry. */
+    private final int _tokenEntries;
+
+    /** The position in _buf of the first commit posting. */
+    private final int _commitPostings;
+
+    /** The position in _buf of the first message posting. */
+    private final int _messagePostings;
+
+    /** The position in _buf of the first token byte. */
+    private final int _tokenBytes;
+
+}
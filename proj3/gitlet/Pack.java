@@ -0,0 +1,477 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** A pack of objects in a single file, written by gc. Every blob, Tree
+ *  and Commit is stored once, deflated, and a blob may be stored as a
+ *  Delta against a similar blob stored before it. Its PackIndex maps
+ *  every id to the offset of its entry, so any object is read with one
+ *  seek per entry in its delta chain.
+ *
+ *  A pack and its index are named by the SHA-1 id of the index and are
+ *  never changed once written. gc writes both under their new name in
+ *  the PACKS directory and only then replaces the PACKHEAD that names
+ *  the current pack, so a reader always finds a pack together with its
+ *  own index, even if gc crashes or runs while it reads. The pack before
+ *  the current one is kept until the next gc, so a reader that opened
+ *  its index just before it was replaced can still read it.
+ *
+ *  An entry is its storage byte (WHOLE or DELTA), the offset of its base
+ *  if it is a DELTA, its stored length and its deflated bytes. A blob
+ *  larger than STREAM_SIZE is neither deltified nor deflated: its entry
+ *  is the storage byte STREAM, its length and its bytes as they are, so
+ *  gc copies it and checkout transfers it a buffer at a time without
+ *  ever holding it in memory. The index is a PackIndex of every id with
+ *  its type byte (BLOB or COMMIT) and entry offset.
+ *  @author Jennifer Tran
+ */
+class Pack {
+
+    /** Returns true if the pack holds the object with the id String ID. */
+    static boolean contains(String id) {
+        return PackIndex.open().find(id) >= 0;
+    }
+
+    /** Returns the type byte of the packed object with the id String ID,
+     *  or -1 if the pack does not hold it. */
+    static int type(String id) {
+        PackIndex index = PackIndex.open();
+        int pos = index.find(id);
+        return pos < 0 ? -1 : index.type(pos);
+    }
+
+    /** Returns up to LIMIT sorted ids of packed objects of type TYPE
+     *  that start with PREFIX. */
+    static List<String> findPrefix(String prefix, int type, int limit) {
+        return PackIndex.open().findPrefix(prefix, type, limit);
+    }
+
+    /** Returns the bytes of the object with the id String ID, or null if
+     *  the pack does not hold it. */
+    static byte[] read(String id) {
+        PackIndex index = PackIndex.open();
+        int pos = index.find(id);
+        if (pos < 0) {
+            return null;
+        }
+        try (RandomAccessFile pack = new RandomAccessFile(
+                index.returnPack(), "r")) {
+            return readAt(pack, index.offset(pos), 0);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes the contents of the packed blob with the id String ID to
+     *  the File F. A STREAM entry is transferred straight from the pack;
+     *  any other is rebuilt from its delta chain first. */
+    static void restore(String id, File f) throws IOException {
+        PackIndex index = PackIndex.open();
+        int pos = index.find(id);
+        if (pos < 0) {
+            throw Utils.error("Missing object %s.", id);
+        }
+        try (RandomAccessFile pack = new RandomAccessFile(
+                index.returnPack(), "r");
+             FileChannel out = FileChannel.open(f.toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = index.offset(pos);
+            pack.seek(offset);
+            if (pack.readByte() != STREAM) {
+                out.write(ByteBuffer.wrap(readAt(pack, offset, 0)));
+                return;
+            }
+            long size = pack.readLong();
+            long start = offset + 1 + 8;
+            for (long done = 0; done < size; ) {
+                done += pack.getChannel().transferTo(start + done,
+                        size - done, out);
+            }
+        }
+    }
+
+    /** Returns the sorted ids of every packed object of the type TYPE. */
+    static List<String> ids(int type) {
+        ArrayList<String> ids = new ArrayList<>();
+        PackIndex index = PackIndex.open();
+        for (int pos = 0; pos < index.size(); pos += 1) {
+            if (index.type(pos) == type) {
+                ids.add(index.id(pos));
+            }
+        }
+        return ids;
+    }
+
+    /** Packs every loose blob and Tree in the OBJECTS directory, every
+     *  loose Commit in the COMMITS directory and every object of the old
+     *  pack into a new pack, then deletes the loose objects and the old
+     *  pack. The Trees of every commit in STORE are walked to give each
+     *  blob a path, and each blob is delta encoded against the blobs
+     *  with the same path packed just before it. */
+    static void gc(Store store) {
+        HashMap<String, String> paths = new HashMap<>();
+        for (String id: store.returnCommitIds()) {
+            Commit commit = store.returnCommit(id);
+            walk(commit.returnTree(), "", paths);
+        }
+        ArrayList<Item> items = new ArrayList<>();
+        for (String id: looseIds(Repo.OBJECTS)) {
+            items.add(new Item(id, BLOB, paths.get(id)));
+        }
+        for (String id: looseIds(Repo.COMMITS)) {
+            items.add(new Item(id, COMMIT, null));
+        }
+        PackIndex index = PackIndex.open();
+        for (int pos = 0; pos < index.size(); pos += 1) {
+            String id = index.id(pos);
+            int type = index.type(pos);
+            if (!Utils.join(type == BLOB ? Repo.OBJECTS : Repo.COMMITS,
+                    id).exists()) {
+                items.add(new Item(id, type, paths.get(id)));
+            }
+        }
+        for (Item item: items) {
+            item._size = size(item);
+        }
+        items.sort(Comparator.comparing((Item item) -> item._type)
+                .thenComparing(item -> item._path == null ? ""
+                        : item._path)
+                .thenComparing(item -> -item._size));
+        write(items);
+        for (Item item: items) {
+            Utils.join(item._type == BLOB ? Repo.OBJECTS : Repo.COMMITS,
+                    item._id).delete();
+        }
+    }
+
+    /** Writes the ITEMS, in order, to a new pack and index, makes them
+     *  the current pack, and deletes every pack but it and the one it
+     *  replaces. */
+    private static void write(List<Item> items) {
+        Repo.PACKS.mkdir();
+        File packTemp = Utils.join(Repo.PACKS, "pack.tmp");
+        File indexTemp = Utils.join(Repo.PACKS, "idx.tmp");
+        TreeMap<String, long[]> index = new TreeMap<>();
+        ArrayList<Item> window = new ArrayList<>();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(packTemp)))) {
+            long offset = 0;
+            for (Item item: items) {
+                item._offset = offset;
+                index.put(item._id, new long[] { item._type, item._offset });
+                if (item._type == BLOB && item._size > STREAM_SIZE) {
+                    out.writeByte(STREAM);
+                    out.writeLong(item._size);
+                    copy(item, out);
+                    offset += 1 + 8 + item._size;
+                    continue;
+                }
+                byte[] bytes = load(item);
+                Item base = null;
+                byte[] best = null;
+                if (item._type == BLOB) {
+                    for (Item other: window) {
+                        if (other._depth >= MAX_DEPTH
+                                || !same(other._path, item._path)) {
+                            continue;
+                        }
+                        byte[] delta = Delta.create(other._bytes, bytes);
+                        if (delta.length < bytes.length / 2 && (best == null
+                                || delta.length < best.length)) {
+                            best = delta;
+                            base = other;
+                        }
+                    }
+                }
+                byte[] stored;
+                if (base == null) {
+                    out.writeByte(WHOLE);
+                    stored = deflate(bytes);
+                } else {
+                    out.writeByte(DELTA);
+                    out.writeLong(base._offset);
+                    stored = deflate(best);
+                    item._depth = base._depth + 1;
+                }
+                out.writeInt(stored.length);
+                out.write(stored);
+                offset += (base == null ? 1 : 1 + 8) + 4 + stored.length;
+                if (item._type == BLOB) {
+                    item._bytes = bytes;
+                    window.add(item);
+                    if (window.size() > WINDOW) {
+                        window.remove(0)._bytes = null;
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        PackIndex.write(indexTemp, index);
+        String name = Utils.sha1(Utils.readContents(indexTemp));
+        File old = PackIndex.open().returnPack();
+        File headTemp = Utils.join(Repo.PACKS, "head.tmp");
+        Utils.writeContents(headTemp, name);
+        try {
+            Utils.replace(packTemp, Utils.join(Repo.PACKS, name + ".pack"));
+            Utils.replace(indexTemp, Utils.join(Repo.PACKS, name + ".idx"));
+            Utils.replace(headTemp, Repo.PACKHEAD);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        for (String file: Utils.plainFilenamesIn(Repo.PACKS)) {
+            if (!file.startsWith(name + ".") && (old == null
+                    || !file.startsWith(old.getName().replace(".pack",
+                            ".")))) {
+                Utils.join(Repo.PACKS, file).delete();
+            }
+        }
+    }
+
+    /** Returns the bytes of the entry at OFFSET of PACK, which is DEPTH
+     *  deltas away from the object asked for. */
+    private static byte[] readAt(RandomAccessFile pack, long offset,
+                                 int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw Utils.error("Delta chain too long in pack.");
+        }
+        pack.seek(offset);
+        int storage = pack.readByte();
+        if (storage == STREAM) {
+            byte[] bytes = new byte[Math.toIntExact(pack.readLong())];
+            pack.readFully(bytes);
+            return bytes;
+        }
+        long base = storage == DELTA ? pack.readLong() : -1;
+        byte[] stored = new byte[pack.readInt()];
+        pack.readFully(stored);
+        byte[] bytes = inflate(stored);
+        if (storage == WHOLE) {
+            return bytes;
+        }
+        return Delta.apply(readAt(pack, base, depth + 1), bytes);
+    }
+
+    /** Adds the path of every blob and Tree under the Tree with the id
+     *  String ID to PATHS, with PREFIX in front of it. */
+    private static void walk(String id, String prefix,
+                             HashMap<String, String> paths) {
+        if (id == null || paths.putIfAbsent(id, prefix) != null) {
+            return;
+        }
+        for (Map.Entry<String, String> e: Tree.read(id).returnEntries()
+                 .entrySet()) {
+            if (Tree.isDir(e.getKey())) {
+                walk(e.getValue(), prefix + e.getKey(), paths);
+            } else {
+                paths.putIfAbsent(e.getValue(), prefix + e.getKey());
+            }
+        }
+    }
+
+    /** Returns the sorted ids of the loose objects in DIR. */
+    private static List<String> looseIds(File dir) {
+        ArrayList<String> ids = new ArrayList<>();
+        for (String name: Utils.plainFilenamesIn(dir)) {
+            if (name.length() == Utils.UID_LENGTH) {
+                ids.add(name);
+            }
+        }
+        return ids;
+    }
+
+    /** Returns the size in bytes of the decoded ITEM, used to order the
+     *  items of a path from largest to smallest and to pick the blobs
+     *  stored as STREAM entries. Neither a loose object nor a STREAM
+     *  entry is read into memory to find it. */
+    private static long size(Item item) {
+        File loose = Utils.join(item._type == BLOB ? Repo.OBJECTS
+                : Repo.COMMITS, item._id);
+        try {
+            if (loose.exists()) {
+                try (InputStream in = Codec.open(loose)) {
+                    return in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            PackIndex index = PackIndex.open();
+            try (RandomAccessFile pack = new RandomAccessFile(
+                    index.returnPack(), "r")) {
+                pack.seek(index.offset(index.find(item._id)));
+                if (pack.readByte() == STREAM) {
+                    return pack.readLong();
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return read(item._id).length;
+    }
+
+    /** Copies the decoded bytes of ITEM, from its loose file or from the
+     *  old pack, to OUT a buffer at a time. */
+    private static void copy(Item item, OutputStream out)
+        throws IOException {
+        File loose = Utils.join(Repo.OBJECTS, item._id);
+        if (loose.exists()) {
+            try (InputStream in = Codec.open(loose)) {
+                in.transferTo(out);
+            }
+            return;
+        }
+        PackIndex index = PackIndex.open();
+        try (RandomAccessFile pack = new RandomAccessFile(
+                index.returnPack(), "r")) {
+            long offset = index.offset(index.find(item._id));
+            pack.seek(offset);
+            if (pack.readByte() != STREAM) {
+                out.write(readAt(pack, offset, 0));
+                return;
+            }
+            pack.readLong();
+            byte[] buf = new byte[Codec.BUFFER_SIZE];
+            for (long left = item._size; left > 0; ) {
+                int n = pack.read(buf, 0, (int) Math.min(buf.length, left));
+                if (n < 0) {
+                    throw Utils.error("Truncated entry in pack.");
+                }
+                out.write(buf, 0, n);
+                left -= n;
+            }
+        }
+    }
+
+    /** Returns the decoded bytes of ITEM, from its loose file or from
+     *  the old pack. */
+    private static byte[] load(Item item) throws IOException {
+        File loose = Utils.join(item._type == BLOB ? Repo.OBJECTS
+                : Repo.COMMITS, item._id);
+        if (loose.exists()) {
+            try (InputStream in = Codec.open(loose)) {
+                return in.readAllBytes();
+            }
+        }
+        return read(item._id);
+    }
+
+    /** Returns true if the paths A and B are both known and equal. */
+    private static boolean same(String a, String b) {
+        return a != null && a.equals(b);
+    }
+
+    /** Returns BYTES compressed with a Deflater. */
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(bytes);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[Codec.BUFFER_SIZE];
+        while (!deflater.finished()) {
+            out.write(buf, 0, deflater.deflate(buf));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /** Returns the bytes decompressed from the deflated STORED. */
+    private static byte[] inflate(byte[] stored) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(stored);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[Codec.BUFFER_SIZE];
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && inflater.needsInput()) {
+                    throw Utils.error("Truncated entry in pack.");
+                }
+                out.write(buf, 0, n);
+            }
+        } catch (DataFormatException excp) {
+            throw Utils.error("Corrupt entry in pack.");
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /** An object being packed by gc. */
+    private static class Item {
+
+        /** An Item for the object with the id String ID of type TYPE,
+         *  found at PATH, which may be null. */
+        Item(String id, int type, String path) {
+            _id = id;
+            _type = type;
+            _path = path;
+        }
+
+        /** The id of the object. */
+        private final String _id;
+
+        /** The type byte of the object. */
+        private final int _type;
+
+        /** A path the object was seen at, or null. */
+        private final String _path;
+
+        /** The stored size of the object. */
+        private long _size;
+
+        /** The offset of the entry of the object in the new pack. */
+        private long _offset;
+
+        /** The number of deltas between the object and a WHOLE entry. */
+        private int _depth;
+
+        /** The bytes of the object while it is in the delta window. */
+        private byte[] _bytes;
+    }
+
+    /** The type byte of a blob or Tree. */
+    static final int BLOB = 0;
+
+    /** The type byte of a Commit. */
+    static final int COMMIT = 1;
+
+    /** The storage byte of an entry stored as it is. */
+    private static final int WHOLE = 0;
+
+    /** The storage byte of an entry stored as a Delta. */
+    private static final int DELTA = 1;
+
+    /** The storage byte of an entry stored as its raw bytes. */
+    private static final int STREAM = 2;
+
+    /** The size in bytes past which a blob is stored as a STREAM
+     *  entry. */
+    private static final long STREAM_SIZE = 1 << 24;
+
+    /** How many earlier blobs a blob is compared with for a Delta. */
+    private static final int WINDOW = 10;
+
+    /** The longest chain of deltas allowed, which bounds how many entries
+     *  are read to rebuild one object. */
+    private static final int MAX_DEPTH = 10;
+
+}
@@ -0,0 +1,277 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/** The index of the current Pack, named by the PACKHEAD and read
+ *  through a MappedByteBuffer together with the pack it indexes.
+ *  Finding an id is a binary search over the mapped file, narrowed by a
+ *  fan-out table on the first byte of the id, and nothing is
+ *  deserialized.
+ *
+ *  The file holds MAGIC, the number N of objects, a fan-out table of 256
+ *  ints in which entry B counts the ids whose first byte is at most B,
+ *  the N ids as 20 raw bytes each in sorted order, then N type bytes and
+ *  N entry offsets of 8 bytes each in the same order.
+ *  @author Jennifer Tran
+ */
+class PackIndex {
+
+    /** A PackIndex over the bytes mapped from an index file, BUF, of the
+     *  pack file PACK. */
+    private PackIndex(MappedByteBuffer buf, File pack) {
+        _buf = buf;
+        _pack = pack;
+        if (_buf.getInt(0) != MAGIC) {
+            throw Utils.error("Not a pack index.");
+        }
+        _size = _buf.getInt(4);
+        _ids = HEADER + FANOUT * 4;
+        _types = _ids + _size * ID_BYTES;
+        _offsets = _types + _size;
+    }
+
+    /** An empty PackIndex, used when there is no pack. */
+    private PackIndex() {
+        _buf = null;
+        _pack = null;
+        _size = 0;
+        _ids = _types = _offsets = 0;
+    }
+
+    /** Returns the PackIndex of the pack named by the PACKHEAD, mapping
+     *  its index again whenever the PACKHEAD has changed since it was
+     *  last read. */
+    static synchronized PackIndex open() {
+        String stamp = Utils.stamp(Repo.PACKHEAD);
+        if (_open == null || !stamp.equals(_stamp)) {
+            _stamp = stamp;
+            if (!Repo.PACKHEAD.exists()) {
+                _open = new PackIndex();
+            } else {
+                String name = Utils.readContentsAsString(Repo.PACKHEAD);
+                try (FileChannel ch = FileChannel.open(
+                        Utils.join(Repo.PACKS, name + ".idx").toPath())) {
+                    _open = new PackIndex(
+                        ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()),
+                        Utils.join(Repo.PACKS, name + ".pack"));
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+        return _open;
+    }
+
+    /** Returns the pack file this index belongs to, or null if there is
+     *  no pack. */
+    File returnPack() {
+        return _pack;
+    }
+
+    /** Returns the number of objects in the index. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the position of the id String ID in the index, or -1 if
+     *  it is not there. */
+    int find(String id) {
+        if (id.length() != Utils.UID_LENGTH || _size == 0 || !isHex(id)) {
+            return -1;
+        }
+        byte[] key = toBytes(id);
+        int lo = bucketStart(key[0] & 0xff);
+        int hi = bucketEnd(key[0] & 0xff) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(mid, key, ID_BYTES);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns up to LIMIT ids of objects of type TYPE that start with
+     *  the hexadecimal PREFIX, in sorted order. The first candidate is
+     *  found by a binary search, so this takes O(log n) plus the number
+     *  of ids that share the prefix. */
+    List<String> findPrefix(String prefix, int type, int limit) {
+        ArrayList<String> found = new ArrayList<>();
+        if (_size == 0 || prefix.isEmpty()
+                || prefix.length() > Utils.UID_LENGTH || !isHex(prefix)) {
+            return found;
+        }
+        StringBuilder low = new StringBuilder(prefix);
+        while (low.length() < Utils.UID_LENGTH) {
+            low.append('0');
+        }
+        byte[] key = toBytes(low.toString());
+        int lo = bucketStart(key[0] & 0xff);
+        int hi = _size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, key, ID_BYTES) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int pos = lo; pos < _size && found.size() < limit; pos += 1) {
+            String id = id(pos);
+            if (!id.startsWith(prefix)) {
+                break;
+            }
+            if (type(pos) == type) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
+    /** Returns the id at position POS as a hexadecimal String. */
+    String id(int pos) {
+        StringBuilder str = new StringBuilder();
+        for (int k = 0; k < ID_BYTES; k += 1) {
+            str.append(String.format("%02x",
+                    _buf.get(_ids + pos * ID_BYTES + k)));
+        }
+        return str.toString();
+    }
+
+    /** Returns the type byte of the object at position POS. */
+    int type(int pos) {
+        return _buf.get(_types + pos);
+    }
+
+    /** Returns the entry offset of the object at position POS. */
+    long offset(int pos) {
+        return _buf.getLong(_offsets + pos * 8);
+    }
+
+    /** Returns the position of the first id whose first byte is B. */
+    private int bucketStart(int b) {
+        return b == 0 ? 0 : _buf.getInt(HEADER + (b - 1) * 4);
+    }
+
+    /** Returns the position after the last id whose first byte is B. */
+    private int bucketEnd(int b) {
+        return _buf.getInt(HEADER + b * 4);
+    }
+
+    /** Compares the first LEN bytes of the id at position POS with the
+     *  first LEN bytes of KEY, as unsigned bytes. */
+    private int compare(int pos, byte[] key, int len) {
+        int at = _ids + pos * ID_BYTES;
+        for (int k = 0; k < len; k += 1) {
+            int cmp = Integer.compare(_buf.get(at + k) & 0xff,
+                    key[k] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Writes an index of the sorted ENTRIES, which map an id to its
+     *  type byte and entry offset, to the File F. */
+    static void write(File f, TreeMap<String, long[]> entries) {
+        int[] fanout = new int[FANOUT];
+        for (String id: entries.keySet()) {
+            fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+        }
+        for (int b = 1; b < FANOUT; b += 1) {
+            fanout[b] += fanout[b - 1];
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (int count: fanout) {
+                out.writeInt(count);
+            }
+            for (String id: entries.keySet()) {
+                out.write(toBytes(id));
+            }
+            for (long[] entry: entries.values()) {
+                out.writeByte((int) entry[0]);
+            }
+            for (long[] entry: entries.values()) {
+                out.writeLong(entry[1]);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns true if STR only holds lowercase hexadecimal digits. */
+    static boolean isHex(String str) {
+        for (int k = 0; k < str.length(); k += 1) {
+            if (Character.digit(str.charAt(k), 16) < 0
+                    || Character.isUpperCase(str.charAt(k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the raw bytes of the hexadecimal id String ID. */
+    static byte[] toBytes(String id) {
+        byte[] bytes = new byte[id.length() / 2];
+        for (int k = 0; k < bytes.length; k += 1) {
+            bytes[k] = (byte) Integer.parseInt(id.substring(2 * k,
+                    2 * k + 2), 16);
+        }
+        return bytes;
+    }
+
+    /** The first int of an index file. */
+    private static final int MAGIC = 0x47494458;
+
+    /** The number of bytes before the fan-out table. */
+    private static final int HEADER = 8;
+
+    /** The number of entries in the fan-out table. */
+    private static final int FANOUT = 256;
+
+    /** The number of bytes in a raw id. */
+    private static final int ID_BYTES = 20;
+
+    /** The PackIndex last opened, or null. */
+    private static PackIndex _open;
+
+    /** The stamp of the PACKHEAD when _open was mapped. */
+    private static String _stamp;
+
+    /** The mapped bytes of the index file. */
+    private final MappedByteBuffer _buf;
+
+    /** The pack file this index belongs to. */
+    private final File _pack;
+
+    /** The number of objects in the index. */
+    private final int _size;
+
+    /** The position in _buf of the first id. */
+    private final int _ids;
+
+    /** The position in _buf of the first type byte. */
+    private final int _types;
+
+    /** The position in _buf of the first offset. */
+    private final int _offsets;
+
+}
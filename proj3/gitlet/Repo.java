@@ -1,10 +1,24 @@
 package gitlet;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.io.Serializable;
-import java.util.Collection;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /** Repo class for Gitlet. Keeps track of all commands and files.
  *  @author Jennifer Tran
@@ -32,53 +46,73 @@ public class Repo implements Serializable {
         }
     }
 
-    /** A helper for Repo() init. */
+    /** A helper for Repo() init. The initial commit and the refs are
+     *  written straight to the COMMITS directory and the REFSFILE, so a
+     *  new repository starts with an empty Journal. */
     private void initialize() {
         String msg = "initial commit";
         Commit initial = new Commit(msg);
+        OBJECTS.mkdir();
+        COMMITS.mkdir();
+        Codec.writeConfig(Codec.DEFLATE);
         Store store = new Store();
-        store.hashCommit(initial.returnId(), initial);
+        Codec.writeObject(Utils.join(COMMITS, initial.returnId()), initial);
 
-        _master = initial;
-        store.hashBranch("master", _master.returnId());
+        store.hashBranch("master", initial.returnId());
         store.setCurBranch("master");
 
-        Utils.writeObject(COMMITSFILE, store);
-
-        _stage = new Stage();
-        Utils.writeObject(STAGEFILE, _stage);
-
-        _head = initial;
-        Utils.writeObject(HEADFILE, _head);
+        Utils.writeObject(REFSFILE, store);
+        Catalog.write(store);
+        Utils.writeObject(STAGEFILE, new Stage());
+        Utils.writeObject(HEADFILE, initial);
     }
 
 
     /******************** ADD ********************/
-    /** ARGS: [file name]
+    /** ARGS: [file name] [file name]...
      *
      *  Adds a copy of the file as it currently exists to the staging area.
+     *  The file may be in a subdirectory of the working directory. The
+     *  file is only read if its stat data differs from the Index.
      *
-     *  Saved in the STAGEFILE through the Stage object and _stage instance. */
+     *  Any number of files may be given, as paths, directories such as
+     *  "." or glob patterns. Nothing is staged unless every one of them
+     *  names at least one existing file. The whole batch is hashed
+     *  together and the stage is read and written once.
+     *
+     *  The contents are saved once in the OBJECTS directory as a Blob,
+     *  and a file is only read again to save a Blob that is not already
+     *  stored. The stage only keeps track of the blob id. Saved in the
+     *  STAGEFILE through the Stage object of the Session. */
     public static void add(String... args) {
-        String fileName = args[1];
-        _stage = Utils.readObject(STAGEFILE, Stage.class);
-        Store s = Utils.readObject(COMMITSFILE, Store.class);
-        File f = Utils.join(WDIR, fileName);
-        if (!f.exists()) {
-            Utils.message("File does not exist.");
-            System.exit(0);
-            return;
-        } else {
-            String contents = Utils.readContentsAsString(f);
-            String c = s.returnHeadCommit().returnContent().get(fileName);
-            if (contents.equals(c)) {
-                _stage.removeAdd(fileName);
+        TreeSet<String> fileNames = new TreeSet<>();
+        for (int i = 1; i < args.length; i += 1) {
+            List<String> paths = WorkTree.expand(args[i]);
+            if (paths.isEmpty() || !WorkTree.file(paths.get(0)).isFile()) {
+                throw Utils.error("File does not exist.");
+            }
+            fileNames.addAll(paths);
+        }
+        Session session = new Session();
+        Stage stage = session.returnStage();
+        TreeMap<String, String> content =
+            session.returnHeadCommit().returnContent();
+        TreeMap<String, String> ids =
+            session.returnIndex().hashAll(fileNames);
+        for (String fileName: fileNames) {
+            String id = ids.get(fileName);
+            if (id.equals(content.get(fileName))) {
+                stage.removeAdd(fileName);
             } else {
-                _stage.add(fileName, contents);
+                if (!Blob.exists(id)) {
+                    id = Blob.save(WorkTree.file(fileName));
+                }
+                stage.add(fileName, id);
             }
-            _stage.removeRm(fileName);
-            Utils.writeObject(STAGEFILE, _stage);
+            stage.removeRm(fileName);
         }
+        session.stageChanged();
+        session.save();
     }
 
 
@@ -88,12 +122,14 @@ public class Repo implements Serializable {
      *  Saves certain files in the current commit and staging area and
      *  creates a new commit.
      *
-     *  Takes Stage objects from the STAGEFILE and Commit objects from
-     *  the _head hash map to create contents. Saves commits into the
-     *  COMMITSFILE as Store objects. */
+     *  Takes Stage objects from the STAGEFILE and applies them to the Tree
+     *  of the head Commit, so only the Trees along staged paths are
+     *  written again. Saves the new commit as its own file in the COMMITS
+     *  directory and moves the current branch in the REFSFILE. */
     public static void commit(String... args) {
-        _stage = Utils.readObject(STAGEFILE, Stage.class);
-        if (_stage.returnAdd().isEmpty() && _stage.returnRm().isEmpty()) {
+        Session session = new Session();
+        Stage stage = session.returnStage();
+        if (stage.returnAdd().isEmpty() && stage.returnRm().isEmpty()) {
             Utils.message("No changes added to the commit.");
             return;
         }
@@ -102,32 +138,25 @@ public class Repo implements Serializable {
             return;
         }
 
-        HashMap<String, String> addCommits = _stage.returnAdd();
-        HashMap<String, String> content = new HashMap<>();
-        for (String c: addCommits.keySet()) {
-            if (!_stage.returnRm().containsKey(c)) {
-                content.put(c, addCommits.get(c));
-            }
+        HashMap<String, String> changes = new HashMap<>();
+        for (String c: stage.returnRm().keySet()) {
+            changes.put(c, null);
         }
-        Store store = Utils.readObject(COMMITSFILE, Store.class);
-        _head = store.returnHeadCommit();
-        if (_head != null) {
-            for (String s: _head.returnContent().keySet()) {
-                if (!content.containsKey(s)
-                        && !_stage.returnRm().containsKey(s)) {
-                    content.put(s, _head.returnContent().get(s));
-                }
+        for (String c: stage.returnAdd().keySet()) {
+            if (!stage.returnRm().containsKey(c)) {
+                changes.put(c, stage.returnAdd().get(c));
             }
         }
+        Store store = session.returnStore();
+        Commit head = store.returnHeadCommit();
+        String tree = Tree.update(head.returnTree(), changes);
 
-        Commit newCommit = new Commit(args[1], content, _head);
+        Commit newCommit = new Commit(args[1], tree, head, null);
         store.hashCommit(newCommit.returnId(), newCommit);
-        store.removeBranch(store.returnCurBranch());
         store.hashBranch(store.returnCurBranch(), newCommit.returnId());
-        Utils.writeObject(COMMITSFILE, store);
-
-        _stage = new Stage();
-        Utils.writeObject(STAGEFILE, _stage);
+        session.storeChanged();
+        session.setStage(new Stage());
+        session.save();
     }
 
 
@@ -139,109 +168,160 @@ public class Repo implements Serializable {
      *  Removes certain files from the STAGEFILE as Stage objects
      *  and saves them in the Stage class's rm HashMap. */
     public static void rm(String... args) {
-        String fileName = args[1];
-        _stage = Utils.readObject(STAGEFILE, Stage.class);
-        Store s = Utils.readObject(COMMITSFILE, Store.class);
-        _head = s.returnHeadCommit();
-        File f = Utils.join(WDIR, fileName);
-        if (checkUntracked(fileName)) {
+        String fileName = WorkTree.path(args[1]);
+        Session session = new Session();
+        Stage stage = session.returnStage();
+        Commit head = session.returnHeadCommit();
+        if (!stage.inAdd(fileName)
+                && !head.returnContent().containsKey(fileName)) {
             Utils.message("No reason to remove the file.");
             return;
         }
-        if (_stage.inAdd(fileName)) {
-            _stage.removeAdd(fileName);
+        if (stage.inAdd(fileName)) {
+            stage.removeAdd(fileName);
         }
-        if (_head.returnContent().containsKey(fileName)) {
-            _stage.rm(fileName, _head.returnContent().get(fileName));
-            Utils.restrictedDelete(f);
+        if (head.returnContent().containsKey(fileName)) {
+            stage.rm(fileName, head.returnContent().get(fileName));
+            WorkTree.delete(fileName);
+            session.returnIndex().remove(fileName);
         }
-        Utils.writeObject(STAGEFILE, _stage);
+        session.stageChanged();
+        session.save();
     }
 
 
     /******************** LOG ********************/
-    /** ARGS: none
+    /** ARGS: [-n count] [--since yyyy-mm-dd]
      *
      *  Displays information about each commit backwards along the
      *  commit tree starting from the head commit until the initial
-     *  commit.
+     *  commit, following the first parent of merge commits. With -n, at
+     *  most count commits are shown, and with --since, only the commits
+     *  made on or after the given local date, stopping at the first
+     *  older one. The count must be at least 1, and each option may be
+     *  given once.
      *
-     *  Takes the branch HashMap saved in the Store class
-     *  in the COMMITSFILE. */
-    public static void log() {
-        Store s = Utils.readObject(COMMITSFILE, Store.class);
-        String branchId = s.returnCurBranch();
-        HashMap<String, String> branchMap = s.returnBranchesMap();
-        Commit h = s.returnCommitMap().get(branchMap.get(branchId));
-        while (h != null) {
-            System.out.println("===");
-            System.out.println("commit " + h.returnId());
-            System.out.println("Date: " + h.returnDate());
-            System.out.println(h.returnMsg());
-            System.out.println();
-            h = h.returnParent();
+     *  Commits are read one at a time as they are printed, and never
+     *  past the last one shown, through a buffered writer that is
+     *  flushed once at the end. */
+    public static void log(String... args) {
+        int limit = Integer.MAX_VALUE;
+        long since = Long.MIN_VALUE;
+        TreeSet<String> given = new TreeSet<>();
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length || !given.add(args[i])) {
+                throw Utils.error("Incorrect operands.");
+            }
+            try {
+                if (args[i].equals("-n")) {
+                    limit = Integer.parseInt(args[i + 1]);
+                    if (limit < 1) {
+                        throw Utils.error("Incorrect operands.");
+                    }
+                } else if (args[i].equals("--since")) {
+                    since = LocalDate.parse(args[i + 1])
+                        .atStartOfDay(ZoneId.systemDefault())
+                        .toInstant().toEpochMilli();
+                } else {
+                    throw Utils.error("Incorrect operands.");
+                }
+            } catch (NumberFormatException | DateTimeParseException excp) {
+                throw Utils.error("Incorrect operands.");
+            }
+        }
+        Store s = new Session().returnStore();
+        PrintWriter out = output();
+        Commit h = s.returnHeadCommit();
+        for (int n = 1; h != null && h.returnTime() >= since; n += 1) {
+            printCommit(out, h);
+            h = n < limit ? s.returnParent(h) : null;
         }
+        out.flush();
     }
 
 
     /******************** GLOBAL LOG ********************/
     /** ARGS: none
      *
-     *  Displays all information about commits ever made.
+     *  Displays all information about commits ever made, newest first,
+     *  ordered by time, then by generation number and then by id.
      *
-     *  Takes the commit HashMap saved in the Store class in the
-     *  COMMITSFILE. */
+     *  Reads the Catalog instead of the commits, so only the fixed-size
+     *  records of the commits are held in memory to sort them, and every
+     *  message is read as it is printed. */
     public static void globalLog() {
-        Store s = Utils.readObject(COMMITSFILE, Store.class);
-        HashMap<String, Commit> map = s.returnCommitMap();
-        Collection<Commit> allCommits = map.values();
-        for (Commit commit: allCommits) {
-            System.out.println("===");
-            System.out.println("commit " + commit.returnId());
-            System.out.println("Date: " + commit.returnDate());
-            System.out.println(commit.returnMsg());
-            System.out.println();
+        Catalog catalog = Catalog.open(new Session().returnStore());
+        PrintWriter out = output();
+        for (int pos: catalog.byDate()) {
+            printEntry(out, catalog.id(pos), catalog.parent(pos),
+                    catalog.merged(pos), catalog.date(pos),
+                    catalog.message(pos));
         }
+        out.flush();
     }
 
 
     /******************** FIND ********************/
-    /** ARGS: [commit message]
+    /** ARGS: [--substring | --regex] [commit message]
      *
-     *  Prints out ids of all commits that have the given commit message.
+     *  Prints out ids of all commits that have the given commit message,
+     *  or with --substring, whose message contains it, or with --regex,
+     *  whose message holds a match of it as a regular expression.
      *
-     *  Takes Store objects saved in the COMMITSFILE. */
+     *  Looks the message up in the MessageIndex, which reads messages
+     *  from the Catalog, so no commit is loaded. */
     public static void find(String... args) {
-        String commitMsg = args[1];
-        Store allCommits = Utils.readObject(COMMITSFILE, Store.class);
-        boolean bool = true;
-        for (Commit c: allCommits.returnCommitMap().values()) {
-            if (c.returnMsg().equals(commitMsg)) {
-                System.out.println(c.returnId());
-                bool = false;
+        boolean option = args.length == 3
+            && (args[1].equals("--substring") || args[1].equals("--regex"));
+        if (args.length != 2 && !option) {
+            throw Utils.error("Incorrect operands.");
+        }
+        Catalog catalog = Catalog.open(new Session().returnStore());
+        MessageIndex index = MessageIndex.open(catalog);
+        List<String> ids;
+        if (args.length == 2) {
+            ids = index.findExact(catalog, args[1]);
+        } else if (args[1].equals("--substring")) {
+            ids = index.findSubstring(catalog, args[2]);
+        } else {
+            try {
+                ids = index.findRegex(catalog, Pattern.compile(args[2]));
+            } catch (PatternSyntaxException excp) {
+                throw Utils.error("Invalid pattern.");
             }
         }
-        if (bool) {
+        if (ids.isEmpty()) {
             Utils.message("Found no commit with that message.");
             return;
         }
+        PrintWriter out = output();
+        for (String id: ids) {
+            out.println(id);
+        }
+        out.flush();
     }
 
 
     /******************** STATUS ********************/
     /** ARGS: none
      *
-     *  Displays what branches currently exist and what files have been
-     *  staged or marked for untracking.
+     *  Displays what branches currently exist, what files have been
+     *  staged or marked for untracking, which files were changed without
+     *  being staged, and which files are untracked. Every section is in
+     *  lexicographic order.
      *
-     *  Takes Store objects from the
-     *  COMMITSFILE and Stage objects from the STAGEFILE. */
+     *  Takes the Store object from the REFSFILE and Stage objects from
+     *  the STAGEFILE, and compares them with the working directory in a
+     *  single Diff. Status runs without the Lock, and takes it only to
+     *  write back the Index the Diff refreshed. */
     public static void status() {
-        Store commits = Utils.readObject(COMMITSFILE, Store.class);
-        Stage stageFiles = Utils.readObject(STAGEFILE, Stage.class);
-        Collection<String> allFiles = Utils.plainFilenamesIn(WDIR);
+        Session session = new Session();
+        Store commits = session.returnStore();
+        Stage stageFiles = session.returnStage();
+        Diff diff = new Diff(session);
         System.out.println("=== Branches ===");
-        for (String branchName: commits.returnBranchesMap().keySet()) {
+        for (String branchName
+                 : new TreeSet<>(commits.returnBranchesMap().keySet())) {
             if (branchName.equals(commits.returnCurBranch())) {
                 System.out.println("*" + branchName);
             } else {
@@ -251,53 +331,30 @@ public class Repo implements Serializable {
         System.out.println();
 
         System.out.println("=== Staged Files ===");
-        for (String fileName: stageFiles.returnAdd().keySet()) {
+        for (String fileName: new TreeSet<>(stageFiles.returnAdd().keySet())) {
             System.out.println(fileName);
         }
         System.out.println();
 
         System.out.println("=== Removed Files ===");
-        for (String fileName: stageFiles.returnRm().keySet()) {
+        for (String fileName: new TreeSet<>(stageFiles.returnRm().keySet())) {
             System.out.println(fileName);
         }
         System.out.println();
 
         System.out.println("=== Modifications Not Staged For Commit ===");
+        for (Map.Entry<String, String> e: diff.returnChanged().entrySet()) {
+            System.out.println(e.getKey() + " (" + e.getValue() + ")");
+        }
         System.out.println();
 
         System.out.println("=== Untracked Files ===");
+        for (String fileName: diff.returnUntracked()) {
+            System.out.println(fileName);
+        }
         System.out.println();
-    }
-
-    /** Helper function for status(). Checks which files are modified or
-     *  deleted and lists them. */
-    public static void checkModAndDelete() {
-        Store commits = Utils.readObject(COMMITSFILE, Store.class);
-        Stage stageFiles = Utils.readObject(STAGEFILE, Stage.class);
-        Collection<String> allFiles = Utils.plainFilenamesIn(WDIR);
-        for (String f: allFiles) {
-            Commit curCommit = commits.returnHeadCommit();
-            HashMap<String, String> commitContent = curCommit.returnContent();
-            String dirContent = Utils.readContentsAsString(Utils.join(WDIR, f));
-            boolean trackedInCommit = curCommit.returnContent().containsKey(f);
-            boolean changedInWDIR = !dirContent.equals(commitContent.get(f));
-            boolean checkStaged = stageFiles.inAdd(f);
-            boolean checkDeleted = false;
-            for (String cF: curCommit.returnContent().keySet()) {
-                File file = Utils.join(WDIR, cF);
-                if (!file.exists()) {
-                    checkDeleted = true;
-                }
-            }
-            if (trackedInCommit && !changedInWDIR && !checkStaged) {
-                System.out.println(f + " (modified)");
-            } else if (!changedInWDIR && checkStaged) {
-                System.out.println(f + " (modified)");
-            } else if (checkStaged && checkDeleted) {
-                System.out.println(f + " (deleted)");
-            } else if (!checkStaged && trackedInCommit && checkDeleted) {
-                System.out.println(f + " (deleted)");
-            }
+        try (Lock lock = Lock.acquire()) {
+            session.save();
         }
     }
 
@@ -309,7 +366,8 @@ public class Repo implements Serializable {
      *
      *  ARGS: [commit id], --, [file name]
      *  Takes the version of the file in the commit with the given
-     *  id and puts it in the working directory.
+     *  id, which may be abbreviated to a unique prefix, and puts it in
+     *  the working directory.
      *
      *  ARGS: [branch name]
      *  If ARGS contains [branch name]: takes all files in the commit
@@ -320,46 +378,45 @@ public class Repo implements Serializable {
     public static void checkout(String... args) {
         String fileName;
         String commitId;
-        String branchName;
-        Store s = Utils.readObject(COMMITSFILE, Store.class);
-        _head = s.returnHeadCommit();
+        Session session = new Session();
+        Store s = session.returnStore();
         if (args.length == 3) {
-            fileName = args[2];
-            if (_head.returnContent().containsKey(fileName)) {
-                String content = _head.returnContent().get(fileName);
-                File f = Utils.join(WDIR, fileName);
-                Utils.writeContents(f, content);
+            fileName = WorkTree.path(args[2]);
+            Commit head = s.returnHeadCommit();
+            String blobId = Tree.lookup(head.returnTree(), fileName);
+            if (blobId != null) {
+                Blob.restore(blobId, WorkTree.file(fileName));
+                session.returnIndex().record(fileName, blobId);
             } else {
                 Utils.message("File does not exist in that commit.");
                 return;
             }
         } else if (args.length == 4) {
-            commitId = args[1];
-            fileName = args[3];
-            if (s.returnCommitMap().containsKey(commitId)) {
-                Commit c = s.returnCommitMap().get(commitId);
-                if (!c.returnContent().containsKey(fileName)) {
+            commitId = resolveCommit(s, args[1]);
+            fileName = WorkTree.path(args[3]);
+            if (commitId != null) {
+                Commit c = s.returnCommit(commitId);
+                String blobId = Tree.lookup(c.returnTree(), fileName);
+                if (blobId == null) {
                     Utils.message("File does not exist in that commit.");
                     return;
                 }
-                File f = Utils.join(WDIR, fileName);
-                Utils.writeContents(f, c.returnContent().get(fileName));
+                Blob.restore(blobId, WorkTree.file(fileName));
+                session.returnIndex().record(fileName, blobId);
             } else {
-                Utils.message("No commit with that id exists.");
                 return;
             }
         } else if (args.length == 2) {
-            checkoutBranch(args);
+            checkoutBranch(session, args);
         }
+        session.save();
     }
 
-    /** Helper function for checking out branches. takes in ARGS. */
-    public static void checkoutBranch(String... args) {
-        String branchName;
-        Store s = Utils.readObject(COMMITSFILE, Store.class);
-        _head = s.returnHeadCommit();
-        branchName = args[1];
-        _stage = Utils.readObject(STAGEFILE, Stage.class);
+    /** Helper function for checking out branches. Takes in the
+     *  SESSION of the command, which the caller saves, and ARGS. */
+    public static void checkoutBranch(Session session, String... args) {
+        String branchName = args[1];
+        Store s = session.returnStore();
         if (!s.returnBranchesMap().containsKey(branchName)) {
             Utils.message("No such branch exists.");
             return;
@@ -368,30 +425,10 @@ public class Repo implements Serializable {
             return;
         }
         String headCommitId = s.returnBranchesMap().get(branchName);
-        Commit c = s.returnCommitMap().get(headCommitId);
-        List<String> wdirFiles = Utils.plainFilenamesIn(WDIR);
-        for (String file: c.returnContent().keySet()) {
-            if (checkUntracked(file) && c.returnContent().containsKey(file)) {
-                Utils.message("There is an untracked file in the way; "
-                        + "delete it or add it first.");
-                System.exit(0);
-                return;
-            }
-        }
-        for (String file: c.returnContent().keySet()) {
-            File f = Utils.join(WDIR, file);
-            Utils.writeContents(f, c.returnContent().get(file));
-        }
-        for (String f: wdirFiles) {
-            if (!checkUntracked(f) && !c.returnContent().containsKey(f)) {
-                File name = Utils.join(WDIR, f);
-                Utils.restrictedDelete(name);
-            }
-        }
+        checkoutCommit(session, s.returnCommit(headCommitId));
         s.setCurBranch(branchName);
-        _stage = new Stage();
-        Utils.writeObject(COMMITSFILE, s);
-        Utils.writeObject(STAGEFILE, _stage);
+        session.storeChanged();
+        session.setStage(new Stage());
     }
 
     /******************** BRANCH ********************/
@@ -399,16 +436,19 @@ public class Repo implements Serializable {
      *
      *  Creates a new branch with the given name and points it at the
      *  current head node. Stored in the branch HashMap as a Store
-     *  object in the COMMITSFILE. */
+     *  object in the REFSFILE. */
     public static void branch(String... args) {
         String branchName = args[1];
-        Store s = Utils.readObject(COMMITSFILE, Store.class);
+        Session session = new Session();
+        Store s = session.returnStore();
         if (s.returnBranchesMap().containsKey(branchName)) {
             Utils.message("A branch with that name already exists.");
             return;
         } else {
-            s.hashBranch(branchName, s.returnHeadCommit().returnId());
-            Utils.writeObject(COMMITSFILE, s);
+            s.hashBranch(branchName,
+                    s.returnBranchesMap().get(s.returnCurBranch()));
+            session.storeChanged();
+            session.save();
         }
     }
 
@@ -420,7 +460,8 @@ public class Repo implements Serializable {
      *  name. */
     public static void rmbranch(String... args) {
         String branchName = args[1];
-        Store s = Utils.readObject(COMMITSFILE, Store.class);
+        Session session = new Session();
+        Store s = session.returnStore();
         if (!s.returnBranchesMap().containsKey(branchName)) {
             Utils.message("A branch with that name does not exist.");
             return;
@@ -429,7 +470,8 @@ public class Repo implements Serializable {
             return;
         } else {
             s.removeBranch(branchName);
-            Utils.writeObject(COMMITSFILE, s);
+            session.storeChanged();
+            session.save();
         }
     }
 
@@ -439,73 +481,254 @@ public class Repo implements Serializable {
      *
      *  Checks out all the files tracked by the given commit, removes
      *  tracked files not present in that commit, and moves the current
-     *  branch's head to that commit node. */
+     *  branch's head to that commit node. The commit id may be
+     *  abbreviated to a unique prefix. */
     public static void reset(String... args) {
-        String commitId = args[1];
-        Store s = Utils.readObject(COMMITSFILE, Store.class);
-        List<String> wdirFiles = Utils.plainFilenamesIn(WDIR);
-        Commit given = s.returnCommitMap().get(commitId);
-        if (!s.returnCommitMap().containsKey(commitId)) {
-            Utils.message("No commit with that id exists.");
+        Session session = new Session();
+        Store s = session.returnStore();
+        String commitId = resolveCommit(s, args[1]);
+        if (commitId == null) {
+            return;
+        }
+        Commit given = s.returnCommit(commitId);
+        checkoutCommit(session, given);
+        s.hashBranch(s.returnCurBranch(), given.returnId());
+        session.storeChanged();
+        session.setStage(new Stage());
+        session.save();
+    }
+
+
+    /******************** MERGE ********************/
+    /** ARGS: [branch name]
+     *
+     *  Merges the files of the given branch into the current branch and
+     *  commits the result as a commit with two parents. Whether either
+     *  head is an ancestor of the other is answered by Store.isAncestor,
+     *  and otherwise the split point is a latest common ancestor of the
+     *  two heads, found by Store.splitPoint. Only the paths that changed
+     *  between the split point and either head are looked at, through
+     *  Tree.diff:
+     *
+     *  A path changed only in the given branch takes its version there,
+     *  which may mean removing it. A path changed only in the current
+     *  branch, or changed the same way in both, is left alone. A path
+     *  changed differently in both is a conflict, and is written with
+     *  both versions between conflict markers. */
+    public static void merge(String... args) {
+        String branchName = args[1];
+        Session session = new Session();
+        Store s = session.returnStore();
+        Stage stage = session.returnStage();
+        if (!stage.returnAdd().isEmpty() || !stage.returnRm().isEmpty()) {
+            Utils.message("You have uncommitted changes.");
+            return;
+        } else if (!s.returnBranchesMap().containsKey(branchName)) {
+            Utils.message("A branch with that name does not exist.");
+            return;
+        } else if (s.returnCurBranch().equals(branchName)) {
+            Utils.message("Cannot merge a branch with itself.");
+            return;
+        }
+        Commit head = s.returnHeadCommit();
+        Commit given = s.returnCommit(s.returnBranchesMap().get(branchName));
+        if (s.isAncestor(given.returnId(), head.returnId())) {
+            Utils.message("Given branch is an ancestor of the current "
+                    + "branch.");
+            return;
+        } else if (s.isAncestor(head.returnId(), given.returnId())) {
+            checkoutCommit(session, given);
+            s.hashBranch(s.returnCurBranch(), given.returnId());
+            session.storeChanged();
+            session.save();
+            Utils.message("Current branch fast-forwarded.");
             return;
         }
-        for (String f: wdirFiles) {
-            if (checkUntracked(f) && given.returnContent().containsKey(f)) {
+        String split = s.splitPoint(head.returnId(), given.returnId());
+        String base = s.returnCommit(split).returnTree();
+        TreeMap<String, String> ours = Tree.diff(base, head.returnTree());
+        TreeMap<String, String> theirs = Tree.diff(base,
+                given.returnTree());
+        TreeMap<String, String> changes = new TreeMap<>();
+        TreeSet<String> conflicts = new TreeSet<>();
+        for (Map.Entry<String, String> e: theirs.entrySet()) {
+            String path = e.getKey();
+            if (!ours.containsKey(path)) {
+                changes.put(path, e.getValue());
+            } else if (!Objects.equals(ours.get(path), e.getValue())) {
+                conflicts.add(path);
+            }
+        }
+        Diff diff = new Diff(session);
+        for (String path: theirs.keySet()) {
+            if (diff.isUntracked(path)) {
                 Utils.message("There is an untracked file in the way; "
                         + "delete it or add it first.");
-                System.exit(0);
                 return;
             }
         }
-        _head = s.returnHeadCommit();
-        _stage = Utils.readObject(STAGEFILE, Stage.class);
-        for (String file: given.returnContent().keySet()) {
-            File f = Utils.join(WDIR, file);
-            Utils.writeContents(f, given.returnContent().get(file));
+        for (String path: conflicts) {
+            changes.put(path, Blob.save(conflict(ours.get(path),
+                    theirs.get(path))));
         }
-        for (String f: wdirFiles) {
-            if (!checkUntracked(f) && !given.returnContent().containsKey(f)) {
-                File name = Utils.join(WDIR, f);
-                Utils.restrictedDelete(name);
+        Materializer materializer = new Materializer(session);
+        ArrayList<String> removed = new ArrayList<>();
+        TreeMap<String, String> written = new TreeMap<>();
+        for (Map.Entry<String, String> e: changes.entrySet()) {
+            if (e.getValue() == null) {
+                removed.add(e.getKey());
+            } else {
+                written.put(e.getKey(), e.getValue());
             }
         }
-        String branchName = s.returnCurBranch();
-        s.removeBranch(branchName);
-        s.hashBranch(branchName, given.returnId());
-        s.setCurBranch(branchName);
-        _stage = new Stage();
-        Utils.writeObject(STAGEFILE, _stage);
+        materializer.delete(removed);
+        materializer.write(written);
+        materializer.report("merge");
+        String tree = Tree.update(head.returnTree(), changes);
+        Commit merged = new Commit("Merged " + branchName + " into "
+                + s.returnCurBranch() + ".", tree, head, given);
+        s.hashCommit(merged.returnId(), merged);
+        s.hashBranch(s.returnCurBranch(), merged.returnId());
+        session.storeChanged();
+        session.save();
+        if (!conflicts.isEmpty()) {
+            Utils.message("Encountered a merge conflict.");
+        }
+    }
+
+
+    /******************** GC ********************/
+    /** ARGS: none
+     *
+     *  Packs all loose blobs, Trees and commits, together with the
+     *  objects of the previous pack, into a single delta-compressed
+     *  pack with an offset index in the PACKS directory, named by the
+     *  PACKHEAD, writes the commit Graph of every commit to the
+     *  GRAPHFILE, and writes the Catalog again, picking up any commit a
+     *  crash kept out of it, along with the MessageIndex over it. */
+    public static void gc() {
+        Journal.compact();
+        Store store = new Session().returnStore();
+        Pack.gc(store);
+        Graph.write(store);
+        Catalog.write(store);
+        MessageIndex.write(Catalog.open(store));
     }
 
 
     /******************** HELPERS ********************/
-    /** Returns the boolean true if a file FILENAME is untracked. */
-    public static boolean checkUntracked(String fileName) {
-        boolean check = false;
-        Stage stage = Utils.readObject(STAGEFILE, Stage.class);
-        Store s = Utils.readObject(COMMITSFILE, Store.class);
-        File f = Utils.join(WDIR, fileName);
-        _head = s.returnHeadCommit();
-        if (f.exists()) {
-            if (!stage.inAdd(fileName)
-                    && !_head.returnContent().containsKey(fileName)) {
-                check = true;
-            }
+    /** Returns a buffered writer to the standard output, which has to be
+     *  flushed when done. */
+    private static PrintWriter output() {
+        return new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out), OUTPUT_BUFFER));
+    }
+
+    /** Prints the log entry of COMMIT to OUT. A merge commit has a line
+     *  with the abbreviated ids of both its parents. */
+    private static void printCommit(PrintWriter out, Commit commit) {
+        printEntry(out, commit.returnId(), commit.returnParentId(),
+                commit.returnMergedId(), commit.returnDate(),
+                commit.returnMsg());
+    }
+
+    /** Prints the log entry of the commit with the id String ID, the
+     *  parent id PARENT, the merged parent id MERGED or null, the date
+     *  DATE and the message MSG to OUT. */
+    private static void printEntry(PrintWriter out, String id,
+                                   String parent, String merged,
+                                   String date, String msg) {
+        out.println("===");
+        out.println("commit " + id);
+        if (merged != null) {
+            out.println("Merge: " + parent.substring(0, SHORT_ID) + " "
+                    + merged.substring(0, SHORT_ID));
+        }
+        out.println("Date: " + date);
+        out.println(msg);
+        out.println();
+    }
+
+    /** Returns the contents of a file in conflict, given the blob ids
+     *  OURS in the current branch and THEIRS in the given branch, either
+     *  of which is null for a removed file. */
+    private static byte[] conflict(String ours, String theirs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8));
+        if (ours != null) {
+            out.writeBytes(Blob.read(ours));
         }
-        return check;
+        out.writeBytes("=======\n".getBytes(StandardCharsets.UTF_8));
+        if (theirs != null) {
+            out.writeBytes(Blob.read(theirs));
+        }
+        out.writeBytes(">>>>>>>\n".getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
     }
 
+    /** Returns the full id of the commit in the Store S whose id is or
+     *  starts with the abbreviated id PREFIX. Prints a message and returns
+     *  null if there is no such commit or more than one. */
+    private static String resolveCommit(Store s, String prefix) {
+        List<String> ids = s.matchCommits(prefix);
+        if (ids.isEmpty()) {
+            Utils.message("No commit with that id exists.");
+            return null;
+        } else if (ids.size() > 1) {
+            Utils.message("Ambiguous commit id.");
+            return null;
+        }
+        return ids.get(0);
+    }
 
-    /******************** INSTANCES ********************/
-    /** An instance of the master branch as a commit. Stored in a HashMap
-     *  in the STORE class. */
-    private static Commit _master;
+    /** Replaces the working files of the SESSION with the files tracked
+     *  by the Commit TARGET. Stops with an error if an untracked file
+     *  would be overwritten. Only the files that differ between the trees
+     *  of the head commit and TARGET, and the files that are staged or
+     *  changed since the head commit, are written or deleted; every other
+     *  file already holds its contents in TARGET. Deletes are done before
+     *  writes, so a file may be replaced by a directory of the same name.
+     *  Both are done in parallel by a Materializer. */
+    private static void checkoutCommit(Session session, Commit target) {
+        Stage stage = session.returnStage();
+        Diff diff = new Diff(session);
+        TreeMap<String, String> changes = Tree.diff(
+                session.returnHeadCommit().returnTree(),
+                target.returnTree());
+        TreeSet<String> dirty = new TreeSet<>(stage.returnAdd().keySet());
+        dirty.addAll(stage.returnRm().keySet());
+        dirty.addAll(diff.returnChanged().keySet());
+        for (String f: dirty) {
+            if (!changes.containsKey(f)) {
+                changes.put(f, Tree.lookup(target.returnTree(), f));
+            }
+        }
+        TreeMap<String, String> writes = new TreeMap<>();
+        ArrayList<String> stale = new ArrayList<>();
+        for (Map.Entry<String, String> e: changes.entrySet()) {
+            if (e.getValue() != null) {
+                writes.put(e.getKey(), e.getValue());
+            } else if (!diff.isUntracked(e.getKey())) {
+                stale.add(e.getKey());
+            }
+        }
+        Materializer materializer = new Materializer(session);
+        if (materializer.blocked(writes.keySet(), diff)) {
+            throw Utils.error("There is an untracked file in the way; "
+                    + "delete it or add it first.");
+        }
+        materializer.delete(stale);
+        materializer.write(writes);
+        materializer.report("checkout");
+    }
 
-    /** An instance of the current head pointer as a commit. */
-    private static Commit _head;
+    /** The length of the abbreviated commit ids in the log of a merge
+     *  commit. */
+    private static final int SHORT_ID = 7;
 
-    /** An instance of the current stage. Utilized in the STAGE class. */
-    private static Stage _stage;
+    /** The size of the buffer of the output of log and global-log, in
+     *  chars. */
+    private static final int OUTPUT_BUFFER = 1 << 16;
 
 
     /******************** FILES & DIRECTORIES ********************/
@@ -515,16 +738,73 @@ public class Repo implements Serializable {
     /** The gitlet directory. */
     static final File GIT = Utils.join(WDIR, ".gitlet");
 
-    /** A file that keeps track of all commits saved in the git file.
-     *  Utilized with the STORE class. */
-    static final File COMMITSFILE = Utils.join(GIT, "commits");
+    /** A file that keeps track of all branches and the current branch
+     *  saved in the git file. Utilized with the STORE class. */
+    static final File REFSFILE = Utils.join(GIT, "refs");
+
+    /** The directory that holds every Commit saved in the git file,
+     *  each in its own file named by its SHA-1 id. */
+    static final File COMMITS = Utils.join(GIT, "commits");
 
     /** A file that keeps track of the current stage saved in the git
      *  file. Utilized with the STAGE class. */
     static final File STAGEFILE = Utils.join(GIT, "stage");
 
+    /** The directory that holds every Blob saved in the git file,
+     *  each named by its SHA-1 id. */
+    static final File OBJECTS = Utils.join(GIT, "objects");
+
+    /** The directory of the packs written by gc, each a NAME.pack file
+     *  holding every packed object and a NAME.idx file mapping the id of
+     *  every packed object to its offset in it. Utilized with the PACK
+     *  class. */
+    static final File PACKS = Utils.join(GIT, "packs");
+
+    /** A file holding the name of the current pack in the PACKS
+     *  directory. */
+    static final File PACKHEAD = Utils.join(GIT, "pack-head");
+
+    /** A file of repository settings, such as the Codec that new
+     *  objects are written with. */
+    static final File CONFIGFILE = Utils.join(GIT, "config");
+
+    /** A file that caches the stat data and blob id of working files.
+     *  Utilized with the INDEX class. */
+    static final File INDEXFILE = Utils.join(GIT, "index");
+
     /** A file that keeps track of the current head saved in the
      *  head file. */
     static final File HEADFILE = Utils.join(GIT, "head");
 
+    /** The Unix domain socket a Daemon takes commands on while it runs.
+     *  Utilized with the DAEMON class. */
+    static final File SOCKETFILE = Utils.join(GIT, "daemon.sock");
+
+    /** The file locked by every command that changes the repository.
+     *  Utilized with the LOCK class. */
+    static final File LOCKFILE = Utils.join(GIT, "lock");
+
+    /** The append-only file of new commits and ref updates that are not
+     *  yet in the COMMITS directory and the REFSFILE. Utilized with the
+     *  JOURNAL class. */
+    static final File JOURNALFILE = Utils.join(GIT, "journal");
+
+    /** A file holding the parents, tree, time and generation number of
+     *  every commit that existed at the last gc. Utilized with the
+     *  GRAPH class. */
+    static final File GRAPHFILE = Utils.join(GIT, "commit-graph");
+
+    /** A file holding the id, parents, time, generation number and
+     *  message offset of every commit, without its contents. Utilized
+     *  with the CATALOG class. */
+    static final File CATALOGFILE = Utils.join(GIT, "catalog");
+
+    /** A file holding the date and message of every commit in the
+     *  CATALOGFILE. */
+    static final File MESSAGEFILE = Utils.join(GIT, "messages");
+
+    /** A file mapping every commit message, and every token of one, to
+     *  the commits that have it. Utilized with the MESSAGEINDEX class. */
+    static final File MESSAGEINDEX = Utils.join(GIT, "message-index");
+
 }
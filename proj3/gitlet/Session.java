@@ -0,0 +1,200 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** The repository state used by a single Gitlet command. The Store and
+ *  the Stage are each read from disk at most once, the first time the
+ *  command asks for them, and are shared by every helper the command
+ *  calls. Whatever was changed is written back exactly once by save().
+ *
+ *  A Daemon keeps the state warm between commands: the objects read or
+ *  saved by one command are handed to the next as long as their files
+ *  are unchanged on disk. The objects handed out by a Session that is
+ *  never saved may have been changed without being written, so they are
+ *  dropped by settle().
+ *  @author Jennifer Tran
+ */
+public class Session {
+
+    /** Initializes a Session without reading anything yet. */
+    public Session() {
+        _handed = new ArrayList<>();
+        if (_keepWarm) {
+            OPEN.add(this);
+        }
+    }
+
+    /** Returns the Store, reading it from the Journal, or from the
+     *  REFSFILE if the Journal holds no refs, if this is the first time
+     *  it is asked for. */
+    public Store returnStore() {
+        if (_store == null) {
+            _store = Journal.returnRefs();
+        }
+        if (_store == null) {
+            _store = load(Repo.REFSFILE, Store.class);
+        }
+        return _store;
+    }
+
+    /** Returns the Stage, reading it from the STAGEFILE if this is the
+     *  first time it is asked for. */
+    public Stage returnStage() {
+        if (_stage == null) {
+            _stage = load(Repo.STAGEFILE, Stage.class);
+        }
+        return _stage;
+    }
+
+    /** Returns the Index, reading it from the INDEXFILE if this is the
+     *  first time it is asked for. A repository without an INDEXFILE
+     *  starts with an empty Index. */
+    public Index returnIndex() {
+        if (_index == null) {
+            if (Repo.INDEXFILE.exists()) {
+                _index = load(Repo.INDEXFILE, Index.class);
+            } else {
+                _index = new Index();
+            }
+        }
+        return _index;
+    }
+
+    /** Returns the head Commit of the current branch. */
+    public Commit returnHeadCommit() {
+        return returnStore().returnHeadCommit();
+    }
+
+    /** Replaces the Stage with STAGE and marks it to be saved. */
+    public void setStage(Stage stage) {
+        _stage = stage;
+        _stageChanged = true;
+    }
+
+    /** Marks the Store to be saved after it was changed in place. */
+    public void storeChanged() {
+        _storeChanged = true;
+    }
+
+    /** Marks the Stage to be saved after it was changed in place. */
+    public void stageChanged() {
+        _stageChanged = true;
+    }
+
+    /** Writes every changed part of the repository state back to the
+     *  git directory. */
+    public void save() {
+        if (_storeChanged) {
+            Journal.appendRefs(_store);
+            _storeChanged = false;
+        }
+        if (_stageChanged) {
+            Utils.writeObject(Repo.STAGEFILE, _stage);
+            keep(Repo.STAGEFILE, _stage);
+            _stageChanged = false;
+        }
+        if (_index != null && _index.changed()) {
+            Utils.writeObject(Repo.INDEXFILE, _index);
+            _index.written();
+            keep(Repo.INDEXFILE, _index);
+            _index = null;
+        }
+        _saved = true;
+    }
+
+    /** Keeps the state read or saved by every later Session warm for the
+     *  next, as a Daemon does. */
+    static void keepWarm() {
+        _keepWarm = true;
+    }
+
+    /** Ends the command run by every Session made since the last call,
+     *  dropping the warm objects handed out by a Session that was never
+     *  saved. */
+    static void settle() {
+        for (Session session: OPEN) {
+            if (!session._saved) {
+                for (File file: session._handed) {
+                    WARM.remove(file);
+                }
+            }
+        }
+        OPEN.clear();
+    }
+
+    /** Returns the object of class CLS saved in FILE, which is the warm
+     *  copy if FILE has not changed since that copy was read or saved. */
+    private <T extends Serializable> T load(File file, Class<T> cls) {
+        if (!_keepWarm) {
+            return Utils.readObject(file, cls);
+        }
+        _handed.add(file);
+        String stamp = Utils.stamp(file);
+        Warm warm = WARM.get(file);
+        if (warm != null && warm._stamp.equals(stamp)) {
+            return cls.cast(warm._value);
+        }
+        T value = Utils.readObject(file, cls);
+        WARM.put(file, new Warm(stamp, value));
+        return value;
+    }
+
+    /** Keeps VALUE, just saved in FILE, as the warm copy of FILE. */
+    private void keep(File file, Serializable value) {
+        if (_keepWarm) {
+            _handed.remove(file);
+            WARM.put(file, new Warm(Utils.stamp(file), value));
+        }
+    }
+
+    /** The warm copy of the object saved in one file. */
+    private static class Warm {
+
+        /** A warm copy VALUE of a file with the stamp STAMP. */
+        Warm(String stamp, Object value) {
+            _stamp = stamp;
+            _value = value;
+        }
+
+        /** The stamp of the file when VALUE was read or saved. */
+        private final String _stamp;
+
+        /** The object saved in the file. */
+        private final Object _value;
+
+    }
+
+    /** True if the state is kept warm between Sessions. */
+    private static boolean _keepWarm;
+
+    /** The warm copies of the files read or saved so far, by file. */
+    private static final HashMap<File, Warm> WARM = new HashMap<>();
+
+    /** The Sessions made since the last settle(). */
+    private static final ArrayList<Session> OPEN = new ArrayList<>();
+
+    /** The files whose warm copies this Session handed out. */
+    private final ArrayList<File> _handed;
+
+    /** True once this Session has been saved. */
+    private boolean _saved;
+
+    /** The Store of this command, or null if it has not been read. */
+    private Store _store;
+
+    /** The Stage of this command, or null if it has not been read. */
+    private Stage _stage;
+
+    /** The Index of this command, or null if it has not been read. */
+    private Index _index;
+
+    /** True if the Store has to be written back by save(). */
+    private boolean _storeChanged;
+
+    /** True if the Stage has to be written back by save(). */
+    private boolean _stageChanged;
+
+}
@@ -17,15 +17,15 @@ public class Stage implements Serializable {
     }
 
     /** Adds to the _add HashMap with the FILENAME as the key and
-     *  CONTENTS as the value. */
-    public void add(String fileName, String contents) {
-        _add.put(fileName, contents);
+     *  the blob id BLOBID as the value. */
+    public void add(String fileName, String blobId) {
+        _add.put(fileName, blobId);
     }
 
     /** Adds to the _rm HashMap with the FILENAME as the key and
-     *  CONTENTS as the value. */
-    public void rm(String fileName, String contents) {
-        _rm.put(fileName, contents);
+     *  the blob id BLOBID as the value. */
+    public void rm(String fileName, String blobId) {
+        _rm.put(fileName, blobId);
     }
 
     /** Checks if the file by the FILENAME is located in the
@@ -35,9 +35,9 @@ public class Stage implements Serializable {
     }
 
     /** Removes Stage objects from the _add HashMap that takes in
-     *  the FILENAME as the key and CONTENTS as the value. */
-    public void removeAdd(String fileName, String contents) {
-        _add.remove(fileName, contents);
+     *  the FILENAME as the key and BLOBID as the value. */
+    public void removeAdd(String fileName, String blobId) {
+        _add.remove(fileName, blobId);
     }
 
     /** Removes Stage objects from the _add HashMap that takes in
@@ -63,12 +63,12 @@ public class Stage implements Serializable {
     }
 
     /** A HashMap that takes in a string of the file name as keys
-     *  and a string of the contents as values for Stage objects
+     *  and a string of the blob id as values for Stage objects
      *  that need to be added. */
     private HashMap<String, String> _add;
 
     /** A HashMap that takes in a string of the file name as keys
-     *  and a string of the contents as values for Stage objects
+     *  and a string of the blob id as values for Stage objects
      *  that need to be removed. */
     private HashMap<String, String> _rm;
 
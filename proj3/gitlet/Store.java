@@ -1,29 +1,263 @@
 package gitlet;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
 
-/** A storage of all commits as a hash map that stores commits based
- *  on its SHA-1 ID. Is the object stored in the COMMITSFILE.
+/** The refs of the repository: all branches and the current branch.
+ *  Is the object stored in the REFSFILE, and appended to the Journal
+ *  whenever it changes. Commits are not part of the Store; each one is
+ *  appended to the Journal, moved to its own file in the COMMITS
+ *  directory, named by its SHA-1 id, when the Journal is compacted, and
+ *  into the Pack by gc. A commit is only loaded when it is asked for.
  *  @author Jennifer Tran
  */
 
 public class Store implements Serializable {
 
-    /** Initializes a Store object. Takes in a COMMIT.*/
+    /** Initializes a Store object. */
     public Store() {
     }
 
-    /** Adds a Commit to the commit HashMap that adds the Commit's
-     *  SHA-1 ID as the key and the Commit COMMIT as the value. */
+    /** Saves the Commit COMMIT with the SHA-1 id String ID by appending
+     *  it to the Journal, and adds it to the Catalog and, when due, the
+     *  MessageIndex. */
     public void hashCommit(String id, Commit commit) {
-        _commitMap.put(id, commit);
+        Journal.appendCommit(id, commit);
+        Catalog.append(this, commit);
+        MessageIndex.update(this);
+        returnCache().put(id, commit);
     }
 
-    /** Returns the commit HashMap to access all commits through its
-     *  SHA-1 id. */
-    public HashMap<String, Commit> returnCommitMap() {
-        return _commitMap;
+    /** Returns the Commit with the SHA-1 id String ID, reading it from the
+     *  COMMITS directory, the Journal or the Pack the first time it is
+     *  asked for.
+     *  Returns null if no such commit exists. */
+    public Commit returnCommit(String id) {
+        if (id == null) {
+            return null;
+        }
+        Commit commit = returnCache().get(id);
+        if (commit == null) {
+            commit = load(id);
+            if (commit != null) {
+                returnCache().put(id, commit);
+            }
+        }
+        return commit;
+    }
+
+    /** Returns the Commit with the SHA-1 id String ID read from its loose
+     *  file, the Journal or the Pack, or null if there is no such
+     *  commit. The loose file is opened rather than tested first, so a
+     *  commit that gc packs and deletes meanwhile is read from the
+     *  Pack. */
+    private Commit load(String id) {
+        Commit loose =
+            Codec.readObject(Utils.join(Repo.COMMITS, id), Commit.class);
+        if (loose != null) {
+            return loose;
+        }
+        Commit journaled = Journal.returnCommit(id);
+        if (journaled != null) {
+            return journaled;
+        }
+        byte[] packed = Pack.read(id);
+        if (packed == null) {
+            return null;
+        }
+        return Utils.deserialize(packed, Commit.class);
+    }
+
+    /** Returns the parent Commit of COMMIT, or null if COMMIT is the
+     *  initial commit. The parent is read on demand and not kept in
+     *  memory, so walking a history of any length holds only one commit
+     *  at a time. */
+    public Commit returnParent(Commit commit) {
+        String id = commit.returnParentId();
+        if (id == null) {
+            return null;
+        }
+        Commit parent = returnCache().get(id);
+        if (parent == null) {
+            parent = load(id);
+        }
+        return parent;
+    }
+
+    /** Returns the id of a latest common ancestor of the commits with
+     *  the SHA-1 ids String A and B: a common ancestor that is not an
+     *  ancestor of any other common ancestor. Walks back from A and B at
+     *  once, always taking the commit with the largest generation number
+     *  next and marking it with the sides it is reached from. A commit
+     *  is only taken after all its descendants among those reached, so
+     *  the first commit taken with both marks is a common ancestor with
+     *  the largest generation number, and no commit older than it is
+     *  ever read. Commits in the Graph are walked without being read. */
+    public String splitPoint(String a, String b) {
+        Graph graph = Graph.open();
+        HashMap<String, Integer> marks = new HashMap<>();
+        HashMap<String, Integer> generations = new HashMap<>();
+        PriorityQueue<String> queue = queue(generations);
+        reach(graph, a, FROM_A, marks, generations, queue);
+        reach(graph, b, FROM_B, marks, generations, queue);
+        while (!queue.isEmpty()) {
+            String id = queue.poll();
+            int mark = marks.get(id);
+            if (mark == (FROM_A | FROM_B)) {
+                return id;
+            }
+            for (String parent: parentIds(graph, id)) {
+                reach(graph, parent, mark, marks, generations, queue);
+            }
+        }
+        return null;
+    }
+
+    /** Returns true if the commit with the SHA-1 id String A is the
+     *  commit with the id String B or one of its ancestors. Only walks
+     *  back from B through commits whose generation number is larger
+     *  than that of A, which are the only ones that can lead to A. */
+    public boolean isAncestor(String a, String b) {
+        Graph graph = Graph.open();
+        int floor = generation(graph, a);
+        HashMap<String, Integer> marks = new HashMap<>();
+        HashMap<String, Integer> generations = new HashMap<>();
+        PriorityQueue<String> queue = queue(generations);
+        reach(graph, b, FROM_B, marks, generations, queue);
+        while (!queue.isEmpty()) {
+            String id = queue.poll();
+            if (id.equals(a)) {
+                return true;
+            } else if (generations.get(id) > floor) {
+                for (String parent: parentIds(graph, id)) {
+                    reach(graph, parent, FROM_B, marks, generations, queue);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns the generation number of the commit with the SHA-1 id
+     *  String ID, from GRAPH if it holds the commit. */
+    private int generation(Graph graph, String id) {
+        int pos = graph.find(id);
+        if (pos >= 0) {
+            return graph.generation(pos);
+        }
+        return returnCommit(id).returnGeneration();
+    }
+
+    /** Returns the ids of the parents of the commit with the SHA-1 id
+     *  String ID, first parent first, from GRAPH if it holds the
+     *  commit. */
+    private List<String> parentIds(Graph graph, String id) {
+        ArrayList<String> parents = new ArrayList<>();
+        int pos = graph.find(id);
+        if (pos >= 0) {
+            for (int parent: new int[] { graph.parent(pos),
+                                          graph.merged(pos) }) {
+                if (parent >= 0) {
+                    parents.add(graph.id(parent));
+                }
+            }
+        } else {
+            Commit commit = returnCommit(id);
+            for (String parent: new String[] { commit.returnParentId(),
+                                               commit.returnMergedId() }) {
+                if (parent != null) {
+                    parents.add(parent);
+                }
+            }
+        }
+        return parents;
+    }
+
+    /** Returns an empty queue of commit ids that yields the id with the
+     *  largest generation number in GENERATIONS first. */
+    private static PriorityQueue<String> queue(
+            HashMap<String, Integer> generations) {
+        return new PriorityQueue<>(Comparator
+            .comparing((String id) -> generations.get(id)).reversed()
+            .thenComparing(Comparator.naturalOrder()));
+    }
+
+    /** Marks the commit with the SHA-1 id String ID as reached with MARK
+     *  in MARKS, adding it to QUEUE and its generation number, read from
+     *  GRAPH if it holds the commit, to GENERATIONS the first time it is
+     *  reached. */
+    private void reach(Graph graph, String id, int mark,
+                       HashMap<String, Integer> marks,
+                       HashMap<String, Integer> generations,
+                       PriorityQueue<String> queue) {
+        marks.merge(id, mark, (x, y) -> x | y);
+        if (!generations.containsKey(id)) {
+            generations.put(id, generation(graph, id));
+            queue.add(id);
+        }
+    }
+
+    /** Returns true if a commit with the SHA-1 id String ID exists. */
+    public boolean containsCommit(String id) {
+        return id != null && (returnCache().containsKey(id)
+                || Utils.join(Repo.COMMITS, id).isFile()
+                || Journal.contains(id)
+                || Pack.type(id) == Pack.COMMIT);
+    }
+
+    /** Returns the ids of up to two commits whose ids start with the
+     *  abbreviated id PREFIX, so a unique prefix gives one id and an
+     *  ambiguous prefix gives two. Packed commits are found by a binary
+     *  search of the PackIndex, journaled commits in the sorted ids of
+     *  the Journal, and loose commits in the sorted listing of the
+     *  COMMITS directory. */
+    public List<String> matchCommits(String prefix) {
+        TreeSet<String> found = new TreeSet<>();
+        if (prefix.length() == Utils.UID_LENGTH) {
+            if (containsCommit(prefix)) {
+                found.add(prefix);
+            }
+            return new ArrayList<>(found);
+        }
+        found.addAll(Pack.findPrefix(prefix, Pack.COMMIT, 2));
+        for (String id: Journal.returnCommitIds().tailSet(prefix)) {
+            if (!id.startsWith(prefix) || found.size() >= 2) {
+                break;
+            }
+            found.add(id);
+        }
+        List<String> loose = Utils.plainFilenamesIn(Repo.COMMITS);
+        int pos = Collections.binarySearch(loose, prefix);
+        for (int i = pos < 0 ? -pos - 1 : pos;
+             i < loose.size() && found.size() < 2; i += 1) {
+            String name = loose.get(i);
+            if (!name.startsWith(prefix)) {
+                break;
+            }
+            if (name.length() == Utils.UID_LENGTH) {
+                found.add(name);
+            }
+        }
+        ArrayList<String> ids = new ArrayList<>(found);
+        return ids.size() > 2 ? ids.subList(0, 2) : ids;
+    }
+
+    /** Returns the SHA-1 ids of all commits ever made, loose or packed,
+     *  in lexicographic order. */
+    public List<String> returnCommitIds() {
+        TreeSet<String> ids = new TreeSet<>(Pack.ids(Pack.COMMIT));
+        ids.addAll(Journal.returnCommitIds());
+        for (String name: Utils.plainFilenamesIn(Repo.COMMITS)) {
+            if (name.length() == Utils.UID_LENGTH) {
+                ids.add(name);
+            }
+        }
+        return new ArrayList<>(ids);
     }
 
     /** Adds a branch to the branch HashMap that adds the BRANCHNAME String
@@ -56,16 +290,33 @@ public class Store implements Serializable {
     /** Returns the head Commit. */
     public Commit returnHeadCommit() {
         String hCommitId = returnBranchesMap().get(returnCurBranch());
-        Commit headCommit = returnCommitMap().get(hCommitId);
-        return headCommit;
+        return returnCommit(hCommitId);
+    }
+
+    /** Returns the HashMap of commits loaded so far, creating it if this
+     *  Store was just read from the REFSFILE. */
+    private HashMap<String, Commit> returnCache() {
+        if (_commitCache == null) {
+            _commitCache = new HashMap<>();
+        }
+        return _commitCache;
     }
 
+    /** The mark of a commit reached from the first commit given to
+     *  splitPoint. */
+    private static final int FROM_A = 1;
+
+    /** The mark of a commit reached from the second commit given to
+     *  splitPoint. */
+    private static final int FROM_B = 2;
+
     /** The current branch as a branch name String. */
     private String _curBranch;
 
-    /** A HashMap of commits that takes the Commit id string as the key
-     *  and the Commit as the value. */
-    private HashMap<String, Commit> _commitMap = new HashMap<String, Commit>();
+    /** A HashMap of the commits loaded so far that takes the Commit id
+     *  string as the key and the Commit as the value. Never written to
+     *  the REFSFILE. */
+    private transient HashMap<String, Commit> _commitCache;
 
     /** A HashMap of branches that takes the branch's branch name string
      *  as the key and the branch Commit's SHA-1 id as the value. */
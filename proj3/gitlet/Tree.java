@@ -0,0 +1,228 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** A snapshot of one directory. Maps the name of every file to its blob
+ *  id and the name of every subdirectory, followed by a "/", to the id of
+ *  its own Tree. A Tree is saved as a blob of its canonical encoding, so
+ *  its id depends only on its contents and an unchanged subdirectory
+ *  keeps the same id, and the same saved Tree, across commits.
+ *  @author Jennifer Tran
+ */
+public class Tree {
+
+    /** A Tree with the sorted ENTRIES. */
+    private Tree(TreeMap<String, String> entries) {
+        _entries = entries;
+    }
+
+    /** Returns the Tree with the SHA-1 id String ID. A null ID stands
+     *  for the empty tree. */
+    public static Tree read(String id) {
+        if (id == null) {
+            return new Tree(new TreeMap<>());
+        }
+        Tree tree = CACHE.get(id);
+        if (tree == null) {
+            tree = new Tree(decode(Blob.read(id)));
+            CACHE.put(id, tree);
+        }
+        return tree;
+    }
+
+    /** Saves a Tree with the sorted ENTRIES and returns its SHA-1 id, or
+     *  null if ENTRIES is empty. */
+    public static String write(TreeMap<String, String> entries) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        String id = Blob.save(encode(entries));
+        CACHE.put(id, new Tree(entries));
+        return id;
+    }
+
+    /** Returns the sorted entries of this Tree. */
+    public TreeMap<String, String> returnEntries() {
+        return _entries;
+    }
+
+    /** Returns a TreeMap from the path of every file under the Tree with
+     *  the id String ROOT to its blob id. Paths use "/" between
+     *  directory names. */
+    public static TreeMap<String, String> flatten(String root) {
+        TreeMap<String, String> files = new TreeMap<>();
+        flatten(root, "", files);
+        return files;
+    }
+
+    /** Adds every file under the Tree with the id String ID to FILES,
+     *  with PREFIX in front of its path. */
+    private static void flatten(String id, String prefix,
+                                TreeMap<String, String> files) {
+        for (Map.Entry<String, String> e: read(id).returnEntries()
+                 .entrySet()) {
+            if (isDir(e.getKey())) {
+                flatten(e.getValue(), prefix + e.getKey(), files);
+            } else {
+                files.put(prefix + e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /** Returns the blob id of the file at PATH under the Tree with the
+     *  id String ROOT, or null if there is no such file. Only the Trees
+     *  along PATH are read. */
+    public static String lookup(String root, String path) {
+        String id = root;
+        String rest = path;
+        int slash = rest.indexOf('/');
+        while (slash >= 0) {
+            id = read(id).returnEntries().get(rest.substring(0, slash + 1));
+            if (id == null) {
+                return null;
+            }
+            rest = rest.substring(slash + 1);
+            slash = rest.indexOf('/');
+        }
+        return read(id).returnEntries().get(rest);
+    }
+
+    /** Returns the changes that turn the files under the Tree with the
+     *  id String FROM into those under the Tree with the id String TO, in
+     *  the form taken by update: a TreeMap from every differing file path
+     *  to its blob id under TO, or to null if TO has no such file.
+     *  Subtrees with the same id on both sides are skipped unread. */
+    public static TreeMap<String, String> diff(String from, String to) {
+        TreeMap<String, String> changes = new TreeMap<>();
+        diff(from, to, "", changes);
+        return changes;
+    }
+
+    /** Adds the changes from the Tree with the id String FROM to the
+     *  Tree with the id String TO to CHANGES, with PREFIX in front of
+     *  every path. */
+    private static void diff(String from, String to, String prefix,
+                             TreeMap<String, String> changes) {
+        if (from != null && from.equals(to)) {
+            return;
+        }
+        TreeMap<String, String> old = read(from).returnEntries();
+        TreeMap<String, String> cur = read(to).returnEntries();
+        for (Map.Entry<String, String> e: old.entrySet()) {
+            if (!cur.containsKey(e.getKey())) {
+                if (isDir(e.getKey())) {
+                    diff(e.getValue(), null, prefix + e.getKey(), changes);
+                } else {
+                    changes.put(prefix + e.getKey(), null);
+                }
+            }
+        }
+        for (Map.Entry<String, String> e: cur.entrySet()) {
+            String was = old.get(e.getKey());
+            if (e.getValue().equals(was)) {
+                continue;
+            } else if (isDir(e.getKey())) {
+                diff(was, e.getValue(), prefix + e.getKey(), changes);
+            } else {
+                changes.put(prefix + e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /** Returns the id of the Tree made by applying CHANGES to the Tree
+     *  with the id String ROOT. CHANGES maps a file path to its new blob
+     *  id, or to null if the file is removed. Only the Trees along the
+     *  changed paths are read and written again; every other subtree
+     *  keeps its id. Returns null if the result is empty. */
+    public static String update(String root, Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return root;
+        }
+        TreeMap<String, String> entries =
+            new TreeMap<>(read(root).returnEntries());
+        TreeMap<String, Map<String, String>> subdirs = new TreeMap<>();
+        for (Map.Entry<String, String> e: changes.entrySet()) {
+            String path = e.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                if (e.getValue() == null) {
+                    entries.remove(path);
+                } else {
+                    entries.put(path, e.getValue());
+                }
+            } else {
+                String dir = path.substring(0, slash + 1);
+                if (!subdirs.containsKey(dir)) {
+                    subdirs.put(dir, new HashMap<>());
+                }
+                subdirs.get(dir).put(path.substring(slash + 1),
+                        e.getValue());
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> e: subdirs.entrySet()) {
+            String sub = update(entries.get(e.getKey()), e.getValue());
+            if (sub == null) {
+                entries.remove(e.getKey());
+            } else {
+                entries.put(e.getKey(), sub);
+            }
+        }
+        return write(entries);
+    }
+
+    /** Returns true if the entry NAME names a subdirectory. */
+    static boolean isDir(String name) {
+        return name.endsWith("/");
+    }
+
+    /** Returns the canonical encoding of the sorted ENTRIES: every entry
+     *  as its name, a NUL byte, its id and a newline. */
+    private static byte[] encode(TreeMap<String, String> entries) {
+        StringBuilder str = new StringBuilder();
+        for (Map.Entry<String, String> e: entries.entrySet()) {
+            str.append(e.getKey()).append('\0').append(e.getValue())
+                .append('\n');
+        }
+        return str.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the sorted entries read from the encoding BYTES. */
+    private static TreeMap<String, String> decode(byte[] bytes) {
+        TreeMap<String, String> entries = new TreeMap<>();
+        String str = new String(bytes, StandardCharsets.UTF_8);
+        int pos = 0;
+        while (pos < str.length()) {
+            int nul = str.indexOf('\0', pos);
+            String name = str.substring(pos, nul);
+            String id = str.substring(nul + 1, nul + 1 + Utils.UID_LENGTH);
+            entries.put(name, id);
+            pos = nul + 1 + Utils.UID_LENGTH + 1;
+        }
+        return entries;
+    }
+
+    /** The most Trees kept in CACHE. */
+    private static final int CACHE_SIZE = 1 << 12;
+
+    /** The CACHE_SIZE Trees read or written most recently, by id. A Tree
+     *  never changes once it is saved, so they are never stale, and the
+     *  least recently used one is dropped first, so the cache stays
+     *  bounded in a Daemon that runs for a long time. */
+    private static final LinkedHashMap<String, Tree> CACHE =
+        new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, Tree> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+    /** A TreeMap that takes the name of an entry as the key and its
+     *  blob or Tree id as the value. */
+    private final TreeMap<String, String> _entries;
+
+}
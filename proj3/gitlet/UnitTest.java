@@ -2,17 +2,31 @@ package gitlet;
 
 import ucb.junit.textui;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.Writer;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
 
 /** The suite of all JUnit tests for the gitlet package.
  *  @author Jonathan Yun, Jennifer Tran
@@ -185,6 +199,660 @@ public class UnitTest {
         close();
     }
 
+    @Test
+    public void blobTest() throws IOException {
+        System.out.println("<-----------blob Test----------->");
+        init();
+        writeTestFile("a.txt", "same");
+        writeTestFile("b.txt", "same");
+        Main.main("add", "a.txt");
+        Main.main("add", "b.txt");
+        Main.main("commit", "two copies");
+        TreeMap<String, String> content =
+            new Session().returnHeadCommit().returnContent();
+        assertEquals(content.get("a.txt"), content.get("b.txt"));
+        assertEquals(2, Utils.join(gitletDir, "objects").list().length);
+        writeTestFile("a.txt", "changed");
+        Main.main("checkout", "--", "a.txt");
+        checkFileContents("a.txt", "same");
+        close();
+    }
+
+    @Test
+    public void hashTest() {
+        System.out.println("<-----------hash Test----------->");
+        init();
+        String first = Utils.plainFilenamesIn(
+                Utils.join(gitletDir, "commits")).get(0);
+        init();
+        String second = Utils.plainFilenamesIn(
+                Utils.join(gitletDir, "commits")).get(0);
+        assertEquals(first, second);
+        close();
+    }
+
+    @Test
+    public void binaryTest() throws IOException {
+        System.out.println("<-----------binary Test----------->");
+        init();
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i += 1) {
+            bytes[i] = (byte) i;
+        }
+        File file = writeTestFile("bin.dat", "");
+        Utils.writeContents(file, bytes);
+        Main.main("add", "bin.dat");
+        Main.main("commit", "binary file");
+        Utils.writeContents(file, "text");
+        Main.main("checkout", "--", "bin.dat");
+        assertArrayEquals(bytes, Utils.readContents(file));
+        close();
+    }
+
+    @Test
+    public void indexTest() throws IOException {
+        System.out.println("<-----------index Test----------->");
+        init();
+        List<String> names = List.of("f.txt");
+        File file = writeTestFile("f.txt", "aaaa");
+        long old = System.currentTimeMillis() / 1000 * 1000 - 10000;
+        file.setLastModified(old);
+        Index index = new Index();
+        String first = index.hashAll(names).get("f.txt");
+        assertEquals(Blob.hash(file), first);
+        writeTestFile("f.txt", "bbbb");
+        file.setLastModified(old);
+        assertEquals(first, index.hashAll(names).get("f.txt"));
+        file.setLastModified(old + 1000);
+        String second = index.hashAll(names).get("f.txt");
+        assertEquals(Blob.hash(file), second);
+        assertTrue(!second.equals(first));
+        writeTestFile("f.txt", "ccccc");
+        file.setLastModified(old + 1000);
+        assertEquals(Blob.hash(file), index.hashAll(names).get("f.txt"));
+        writeTestFile("f.txt", "ddddd");
+        long racy = file.lastModified();
+        assertEquals(Blob.hash(file), index.hashAll(names).get("f.txt"));
+        writeTestFile("f.txt", "eeeee");
+        file.setLastModified(racy);
+        assertEquals(Blob.hash(file), index.hashAll(names).get("f.txt"));
+        close();
+    }
+
+    @Test
+    public void diffTest() throws IOException {
+        System.out.println("<-----------diff Test----------->");
+        init();
+        writeTestFile("a.txt", "a");
+        writeTestFile("b.txt", "b");
+        Main.main("add", "a.txt");
+        Main.main("add", "b.txt");
+        Main.main("commit", "two files");
+        writeTestFile("a.txt", "changed");
+        Utils.join(cwd, "b.txt").delete();
+        writeTestFile("c.txt", "c");
+        Diff diff = new Diff(new Session());
+        assertEquals("modified", diff.returnChanged().get("a.txt"));
+        assertEquals("deleted", diff.returnChanged().get("b.txt"));
+        assertTrue(diff.isUntracked("c.txt"));
+        close();
+    }
+
+    @Test
+    public void subdirectoryTest() throws IOException {
+        System.out.println("<-----------subdirectory Test----------->");
+        init();
+        Utils.join(cwd, "dir", "sub").mkdirs();
+        writeTestFile("top.txt", "top");
+        writeTestFile("dir/a.txt", "a");
+        writeTestFile("dir/sub/b.txt", "b");
+        Main.main("add", "top.txt");
+        Main.main("add", "dir/a.txt");
+        Main.main("add", "dir/sub/b.txt");
+        Main.main("commit", "nested files");
+        String first = new Session().returnHeadCommit().returnTree();
+        String sub = Tree.read(Tree.read(first).returnEntries().get("dir/"))
+            .returnEntries().get("sub/");
+        writeTestFile("top.txt", "changed");
+        Main.main("add", "top.txt");
+        Main.main("commit", "changed top");
+        String second = new Session().returnHeadCommit().returnTree();
+        assertEquals(Tree.read(first).returnEntries().get("dir/"),
+                Tree.read(second).returnEntries().get("dir/"));
+        assertEquals(sub, Tree.read(Tree.read(second).returnEntries()
+                .get("dir/")).returnEntries().get("sub/"));
+        writeTestFile("dir/sub/b.txt", "changed");
+        Main.main("checkout", "--", "dir/sub/b.txt");
+        checkFileContents("dir/sub/b.txt", "b");
+        assertEquals("dir/b.txt", WorkTree.path("dir/sub/../b.txt"));
+        for (String outside: new String[] { "../a.txt", "dir/../../a.txt",
+                ".gitlet/refs", "/top.txt" }) {
+            boolean rejected = false;
+            try {
+                WorkTree.path(outside);
+            } catch (GitletException excp) {
+                rejected = true;
+            }
+            assertTrue(rejected);
+        }
+        close();
+        Utils.join(cwd, "dir", "sub").delete();
+        Utils.join(cwd, "dir").delete();
+    }
+
+    @Test
+    public void codecTest() throws IOException {
+        System.out.println("<-----------codec Test----------->");
+        init();
+        File objects = Utils.join(gitletDir, "objects");
+        byte[] deflated = "deflated ".repeat(100)
+            .getBytes(StandardCharsets.UTF_8);
+        Codec.writeConfig(Codec.DEFLATE);
+        String first = Blob.save(deflated);
+        assertEquals(Codec.DEFLATE, Codec.of(Utils.join(objects, first)));
+        assertTrue(Utils.join(objects, first).length() < deflated.length);
+        writeTestFile("f.txt", "written deflated");
+        Main.main("add", "f.txt");
+        Main.main("commit", "deflated");
+        Codec.writeConfig(Codec.NONE);
+        byte[] stored = "stored ".repeat(100).getBytes(StandardCharsets.UTF_8);
+        String second = Blob.save(stored);
+        assertEquals(Codec.NONE, Codec.of(Utils.join(objects, second)));
+        assertEquals(stored.length + 1,
+                Utils.join(objects, second).length());
+        assertArrayEquals(deflated, Blob.read(first));
+        assertArrayEquals(stored, Blob.read(second));
+        writeTestFile("f.txt", "changed");
+        Main.main("checkout", "--", "f.txt");
+        checkFileContents("f.txt", "written deflated");
+        Utils.writeContents(Utils.join(gitletDir, "config"),
+                "compression=zip\n");
+        boolean rejected = false;
+        try {
+            Codec.configured();
+        } catch (GitletException excp) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+        close();
+    }
+
+    @Test
+    public void gcTest() throws IOException {
+        System.out.println("<-----------gc Test----------->");
+        init();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i += 1) {
+            text.append("line ").append(i).append("\n");
+        }
+        writeTestFile("config.txt", text.toString());
+        Main.main("add", "config.txt");
+        Main.main("commit", "version 0");
+        String first = new Session().returnHeadCommit().returnId();
+        for (int v = 1; v <= 5; v += 1) {
+            text.append("version ").append(v).append("\n");
+            writeTestFile("config.txt", text.toString());
+            Main.main("add", "config.txt");
+            Main.main("commit", "version " + v);
+        }
+        Main.main("gc");
+        assertEquals(0, Utils.join(gitletDir, "objects").list().length);
+        assertEquals(0, Utils.join(gitletDir, "commits").list().length);
+        checkFileContents("config.txt", text.toString());
+        Main.main("checkout", first, "--", "config.txt");
+        assertTrue(Utils.readContentsAsString(Utils.join(cwd, "config.txt"))
+                .endsWith("line 499\n"));
+        close();
+    }
+
+    @Test
+    public void shortIdTest() throws IOException {
+        System.out.println("<-----------short id Test----------->");
+        init();
+        writeTestFile("f.txt", "one");
+        Main.main("add", "f.txt");
+        Main.main("commit", "one");
+        String packed = new Session().returnHeadCommit().returnId();
+        Main.main("gc");
+        writeTestFile("f.txt", "two");
+        Main.main("add", "f.txt");
+        Main.main("commit", "two");
+        String loose = new Session().returnHeadCommit().returnId();
+        Store store = new Session().returnStore();
+        assertEquals(packed, store.matchCommits(packed.substring(0, 8))
+                .get(0));
+        assertEquals(loose, store.matchCommits(loose.substring(0, 8))
+                .get(0));
+        assertEquals(0, store.matchCommits("xyz").size());
+        Main.main("checkout", packed.substring(0, 6), "--", "f.txt");
+        checkFileContents("f.txt", "one");
+        close();
+    }
+
+    @Test
+    public void parallelHashTest() throws IOException {
+        System.out.println("<-----------parallel hash Test----------->");
+        init();
+        TreeMap<String, File> files = new TreeMap<>();
+        for (int i = 0; i < 70; i += 1) {
+            Utils.join(cwd, "d" + i % 3, "s" + i % 2).mkdirs();
+            String name = "d" + i % 3 + "/s" + i % 2 + "/f" + i + ".txt";
+            files.put(name, writeTestFile(name, "file " + i));
+        }
+        Index index = new Index();
+        TreeMap<String, String> ids = index.hashAll(files.keySet());
+        assertEquals(files.size(), ids.size());
+        for (String name: files.keySet()) {
+            assertEquals(Blob.hash(files.get(name)), ids.get(name));
+        }
+        for (int i = 0; i < 70; i += 5) {
+            String name = "d" + i % 3 + "/s" + i % 2 + "/f" + i + ".txt";
+            files.remove(name).delete();
+        }
+        for (int i = 1; i < 70; i += 5) {
+            String name = "d" + i % 3 + "/s" + i % 2 + "/f" + i + ".txt";
+            writeTestFile(name, "changed " + i);
+        }
+        ids = index.hashAll(files.keySet());
+        assertEquals(files.size(), ids.size());
+        for (String name: files.keySet()) {
+            assertEquals(Blob.hash(files.get(name)), ids.get(name));
+        }
+        close();
+        for (int d = 0; d < 3; d += 1) {
+            Utils.join(cwd, "d" + d, "s0").delete();
+            Utils.join(cwd, "d" + d, "s1").delete();
+            Utils.join(cwd, "d" + d).delete();
+        }
+    }
+
+    @Test
+    public void parallelCheckoutTest() throws IOException {
+        System.out.println("<-----------parallel checkout Test----------->");
+        init();
+        TreeMap<String, String> base = new TreeMap<>();
+        for (int i = 0; i < 70; i += 1) {
+            Utils.join(cwd, "d" + i % 3, "s" + i % 2).mkdirs();
+            String name = "d" + i % 3 + "/s" + i % 2 + "/f" + i + ".txt";
+            writeTestFile(name, "base " + i);
+            Main.main("add", name);
+            base.put(name, "base " + i);
+        }
+        Main.main("commit", "base");
+        Main.main("branch", "other");
+        TreeMap<String, String> head = new TreeMap<>(base);
+        for (int i = 0; i < 70; i += 1) {
+            String name = "d" + i % 3 + "/s" + i % 2 + "/f" + i + ".txt";
+            if (i % 5 == 0) {
+                Main.main("rm", name);
+                head.remove(name);
+            } else if (i % 3 == 0) {
+                writeTestFile(name, "head " + i);
+                Main.main("add", name);
+                head.put(name, "head " + i);
+            }
+        }
+        Utils.join(cwd, "new").mkdir();
+        for (int i = 70; i < 80; i += 1) {
+            String name = "new/f" + i + ".txt";
+            writeTestFile(name, "new " + i);
+            Main.main("add", name);
+            head.put(name, "new " + i);
+        }
+        Main.main("commit", "head");
+        Main.main("checkout", "other");
+        for (String name: base.keySet()) {
+            checkFileContents(name, base.get(name));
+        }
+        for (String name: head.keySet()) {
+            assertTrue(base.containsKey(name)
+                    || !Utils.join(cwd, name).exists());
+        }
+        Main.main("checkout", "master");
+        for (String name: head.keySet()) {
+            checkFileContents(name, head.get(name));
+        }
+        for (String name: base.keySet()) {
+            assertTrue(head.containsKey(name)
+                    || !Utils.join(cwd, name).exists());
+        }
+        close();
+        Utils.join(cwd, "new").delete();
+        for (int d = 0; d < 3; d += 1) {
+            Utils.join(cwd, "d" + d, "s0").delete();
+            Utils.join(cwd, "d" + d, "s1").delete();
+            Utils.join(cwd, "d" + d).delete();
+        }
+    }
+
+    @Test
+    public void treeDiffTest() throws IOException {
+        System.out.println("<-----------tree diff Test----------->");
+        init();
+        writeTestFile("same.txt", "same");
+        writeTestFile("f.txt", "one");
+        Main.main("add", "same.txt");
+        Main.main("add", "f.txt");
+        Main.main("commit", "one");
+        String first = new Session().returnHeadCommit().returnTree();
+        Main.main("branch", "other");
+        writeTestFile("f.txt", "two");
+        writeTestFile("g.txt", "new");
+        Main.main("add", "f.txt");
+        Main.main("add", "g.txt");
+        Main.main("commit", "two");
+        String second = new Session().returnHeadCommit().returnTree();
+        TreeMap<String, String> changes = Tree.diff(first, second);
+        assertEquals(2, changes.size());
+        assertEquals(Tree.lookup(second, "g.txt"), changes.get("g.txt"));
+        assertEquals(null, Tree.diff(second, first).get("g.txt"));
+        assertTrue(Tree.diff(second, second).isEmpty());
+        writeTestFile("same.txt", "edited");
+        Main.main("checkout", "other");
+        checkFileContents("f.txt", "one");
+        checkFileContents("same.txt", "same");
+        assertTrue(!Utils.join(cwd, "g.txt").exists());
+        close();
+    }
+
+    @Test
+    public void globAddTest() throws IOException {
+        System.out.println("<-----------glob add Test----------->");
+        init();
+        Utils.join(cwd, "dir").mkdirs();
+        writeTestFile("a.txt", "a");
+        writeTestFile("b.txt", "b");
+        writeTestFile("c.md", "c");
+        writeTestFile("dir/d.txt", "d");
+        Main.main("add", "*.txt", "c.md");
+        Stage stage = new Session().returnStage();
+        assertEquals(3, stage.returnAdd().size());
+        assertTrue(!stage.returnAdd().containsKey("dir/d.txt"));
+        Main.main("add", ".");
+        assertEquals(4, new Session().returnStage().returnAdd().size());
+        close();
+        Utils.join(cwd, "dir").delete();
+    }
+
+    @Test
+    public void journalTest() throws IOException {
+        System.out.println("<-----------journal Test----------->");
+        init();
+        writeTestFile("f.txt", "one");
+        Main.main("add", "f.txt");
+        Main.main("commit", "one");
+        String first = new Session().returnHeadCommit().returnId();
+        File journal = Utils.join(gitletDir, "journal");
+        long length = journal.length();
+        Writer w = new OutputStreamWriter(new FileOutputStream(journal, true));
+        w.write("torn");
+        w.close();
+        assertEquals(first, new Session().returnHeadCommit().returnId());
+        writeTestFile("f.txt", "two");
+        Main.main("add", "f.txt");
+        Main.main("commit", "two");
+        Commit second = new Session().returnHeadCommit();
+        assertEquals(first, second.returnParentId());
+        assertTrue(journal.length() > length);
+        Journal.compact();
+        assertTrue(Utils.join(gitletDir, "commits", first).isFile());
+        assertEquals(second.returnId(),
+                new Session().returnHeadCommit().returnId());
+        close();
+    }
+
+    @Test
+    public void mergeTest() throws IOException {
+        System.out.println("<-----------merge Test----------->");
+        init();
+        writeTestFile("f.txt", "base");
+        writeTestFile("g.txt", "base");
+        Main.main("add", "f.txt", "g.txt");
+        Main.main("commit", "base");
+        String split = new Session().returnHeadCommit().returnId();
+        Main.main("branch", "other");
+        writeTestFile("f.txt", "ours");
+        Main.main("add", "f.txt");
+        Main.main("commit", "ours");
+        Main.main("checkout", "other");
+        writeTestFile("g.txt", "theirs");
+        Main.main("add", "g.txt");
+        Main.main("commit", "theirs");
+        String theirs = new Session().returnHeadCommit().returnId();
+        Main.main("checkout", "master");
+        Store store = new Session().returnStore();
+        assertEquals(split, store.splitPoint(
+                store.returnHeadCommit().returnId(), theirs));
+        Main.main("merge", "other");
+        Commit merged = new Session().returnHeadCommit();
+        assertEquals(theirs, merged.returnMergedId());
+        assertEquals(4, merged.returnGeneration());
+        checkFileContents("f.txt", "ours");
+        checkFileContents("g.txt", "theirs");
+        close();
+    }
+
+    @Test
+    public void graphTest() throws IOException {
+        System.out.println("<-----------graph Test----------->");
+        init();
+        writeTestFile("f.txt", "one");
+        Main.main("add", "f.txt");
+        Main.main("commit", "one");
+        Commit first = new Session().returnHeadCommit();
+        Main.main("gc");
+        writeTestFile("f.txt", "two");
+        Main.main("add", "f.txt");
+        Main.main("commit", "two");
+        String second = new Session().returnHeadCommit().returnId();
+        Graph graph = Graph.open();
+        assertEquals(2, graph.size());
+        int pos = graph.find(first.returnId());
+        assertEquals(first.returnTree(), graph.tree(pos));
+        assertEquals(first.returnParentId(), graph.id(graph.parent(pos)));
+        assertEquals(2, graph.generation(pos));
+        assertEquals(-1, graph.find(second));
+        Store store = new Session().returnStore();
+        assertTrue(store.isAncestor(first.returnParentId(), second));
+        assertTrue(!store.isAncestor(second, first.returnId()));
+        assertEquals(first.returnId(),
+                store.splitPoint(first.returnId(), second));
+        close();
+    }
+
+    @Test
+    public void logLimitTest() throws IOException {
+        System.out.println("<-----------log limit Test----------->");
+        init();
+        for (String msg: new String[] {"one", "two", "three"}) {
+            writeTestFile("f.txt", msg);
+            Main.main("add", "f.txt");
+            Main.main("commit", msg);
+        }
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes));
+        try {
+            Main.main("log", "-n", "2");
+            Main.main("log", "--since", "2999-01-01");
+            Main.main("log", "-n", "0");
+            Main.main("log", "-n", "1", "-n", "2");
+        } finally {
+            System.setOut(stdout);
+        }
+        String log = bytes.toString();
+        assertEquals(2, log.split("Incorrect operands.").length - 1);
+        assertEquals(2, log.split("===").length - 1);
+        assertTrue(log.contains("three") && log.contains("two"));
+        assertTrue(!log.contains("one"));
+        close();
+    }
+
+    @Test
+    public void catalogTest() throws IOException {
+        System.out.println("<-----------catalog Test----------->");
+        init();
+        writeTestFile("f.txt", "one");
+        Main.main("add", "f.txt");
+        Main.main("commit", "one");
+        Commit head = new Session().returnHeadCommit();
+        Catalog catalog = Catalog.open(new Session().returnStore());
+        assertEquals(2, catalog.size());
+        int[] order = catalog.byDate();
+        assertEquals(head.returnId(), catalog.id(order[0]));
+        assertEquals(head.returnParentId(), catalog.parent(order[0]));
+        assertEquals(null, catalog.parent(order[1]));
+        assertEquals("one", catalog.message(order[0]));
+        assertEquals(head.returnDate(), catalog.date(order[0]));
+        assertEquals("initial commit", catalog.message(order[1]));
+        Utils.join(gitletDir, "catalog").delete();
+        catalog = Catalog.open(new Session().returnStore());
+        assertEquals(head.returnId(), catalog.id(catalog.byDate()[0]));
+        Main.main("gc");
+        assertEquals(2, Catalog.open(new Session().returnStore()).size());
+        close();
+    }
+
+    @Test
+    public void messageIndexTest() throws IOException {
+        System.out.println("<-----------message index Test----------->");
+        init();
+        String[] msgs = {"build 41: fix parser", "build 42: fix lexer",
+                         "docs"};
+        ArrayList<String> ids = new ArrayList<>();
+        for (String msg: msgs) {
+            writeTestFile("f.txt", msg);
+            Main.main("add", "f.txt");
+            Main.main("commit", msg);
+            ids.add(new Session().returnHeadCommit().returnId());
+        }
+        Main.main("gc");
+        writeTestFile("f.txt", "late");
+        Main.main("add", "f.txt");
+        Main.main("commit", "build 43: fix parser");
+        String late = new Session().returnHeadCommit().returnId();
+        Catalog catalog = Catalog.open(new Session().returnStore());
+        MessageIndex index = MessageIndex.open(catalog);
+        assertEquals(List.of(ids.get(2)), index.findExact(catalog, "docs"));
+        assertEquals(0, index.findExact(catalog, "doc").size());
+        TreeSet<String> parser = new TreeSet<>(List.of(ids.get(0), late));
+        assertEquals(new ArrayList<>(parser),
+                index.findSubstring(catalog, "fix pars"));
+        assertEquals(List.of(ids.get(1)),
+                index.findSubstring(catalog, "ld 42"));
+        assertEquals(3, index.findSubstring(catalog, "uil").size());
+        assertEquals(List.of(late), index.findRegex(catalog,
+                Pattern.compile("4[3-9]:")));
+        close();
+    }
+
+    @Test
+    public void packIndexTest() throws IOException {
+        System.out.println("<-----------pack index Test----------->");
+        init();
+        writeTestFile("f.txt", "one");
+        Main.main("add", "f.txt");
+        Main.main("commit", "one");
+        Main.main("gc");
+        PackIndex first = PackIndex.open();
+        writeTestFile("f.txt", "two");
+        Main.main("add", "f.txt");
+        Main.main("commit", "two");
+        String id = new Session().returnHeadCommit().returnId();
+        assertEquals(-1, first.find(id));
+        Main.main("gc");
+        PackIndex second = PackIndex.open();
+        assertTrue(second != first);
+        assertTrue(second.find(id) >= 0);
+        assertEquals(List.of(id),
+                second.findPrefix(id.substring(0, 8), Pack.COMMIT, 2));
+        assertEquals(List.of(id), new Session().returnStore()
+                .matchCommits(id.substring(0, 8)));
+        close();
+    }
+
+    @Test
+    public void lockTest() throws IOException {
+        System.out.println("<-----------lock Test----------->");
+        init();
+        boolean refused = false;
+        try (Lock held = Lock.acquire()) {
+            try (Lock again = Lock.acquire()) {
+                refused = false;
+            } catch (OverlappingFileLockException excp) {
+                refused = true;
+            }
+        }
+        assertTrue(refused);
+        try (Lock after = Lock.acquire()) {
+            assertTrue(after != null);
+        }
+        close();
+    }
+
+    @Test
+    public void daemonTest() throws Exception {
+        System.out.println("<-----------daemon Test----------->");
+        init();
+        writeTestFile("f.txt", "one");
+        Main.main("add", "f.txt");
+        Main.main("commit", "one");
+        Main.main("branch", "other");
+        ProcessBuilder builder = new ProcessBuilder(
+                ProcessHandle.current().info().command().orElse("java"),
+                "-cp", System.getProperty("java.class.path"),
+                "gitlet.Main", "daemon");
+        builder.directory(cwd).redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        builder.environment().put("GITLET_TIMINGS", "1");
+        File socket = Utils.join(gitletDir, "daemon.sock");
+        Process daemon = builder.start();
+        try {
+            for (int i = 0; i < 200 && !socket.exists(); i += 1) {
+                Thread.sleep(100);
+            }
+            String[] status = callDaemon("status");
+            assertTrue(status[0].contains("=== Branches ===\n*master"));
+            assertEquals("", status[1]);
+            String[] checkout = callDaemon("checkout", "other");
+            assertEquals("", checkout[0]);
+            assertTrue(checkout[1].startsWith("checkout:"));
+            assertEquals("Daemon stopped.\n",
+                    callDaemon("daemon", "stop")[0]);
+            assertEquals(0, daemon.waitFor());
+        } finally {
+            daemon.destroy();
+        }
+        close();
+    }
+
+    /** Sends ARGS to the Daemon of the test repository as a client does
+     *  and returns the standard output and error it sends back. */
+    private String[] callDaemon(String... args) throws IOException {
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        try (SocketChannel channel = SocketChannel.open(
+                UnixDomainSocketAddress.of(".gitlet/daemon.sock"))) {
+            DataOutputStream request = new DataOutputStream(
+                    Channels.newOutputStream(channel));
+            request.writeInt(args.length);
+            for (String arg: args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            DataInputStream frames = new DataInputStream(
+                    Channels.newInputStream(channel));
+            for (int tag = frames.readByte(); tag != 0;
+                 tag = frames.readByte()) {
+                byte[] bytes = new byte[frames.readInt()];
+                frames.readFully(bytes);
+                (tag == 2 ? err : out).append(
+                        new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+        return new String[] { out.toString(), err.toString() };
+    }
+
     private void init() {
         clearDir(gitletDir);
         Main.main("init");
@@ -208,12 +876,12 @@ public class UnitTest {
     private void close() {
         clearDir(gitletDir);
         for (File file: filesToDelete) {
-            Utils.restrictedDelete(file);
+            file.delete();
         }
     }
 
     private void clearDir(File wD) {
-        List<String> fileNames = Utils.plainFilenamesIn(wD);
+        String[] fileNames = wD.list();
         if (fileNames == null) {
             return;
         }
@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** The working directory, including its subdirectories. Files are named
+ *  by their path relative to the working directory, with "/" between
+ *  directory names, the same way they are named in a Tree.
+ *  @author Jennifer Tran
+ */
+public class WorkTree {
+
+    /** Returns the paths of all plain files in the working directory and
+     *  its subdirectories, except the git directory, in lexicographic
+     *  order. */
+    public static List<String> files() {
+        ArrayList<String> paths = new ArrayList<>();
+        collect(new File(Repo.WDIR), "", paths);
+        Collections.sort(paths);
+        return paths;
+    }
+
+    /** Adds the paths of all plain files under DIR to PATHS, with PREFIX
+     *  in front of each name. */
+    private static void collect(File dir, String prefix,
+                                List<String> paths) {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name: names) {
+            File f = new File(dir, name);
+            if (f.isFile()) {
+                paths.add(prefix + name);
+            } else if (f.isDirectory()
+                    && !(prefix.isEmpty() && name.equals(".gitlet"))) {
+                collect(f, prefix + name + "/", paths);
+            }
+        }
+    }
+
+    /** Returns the path of the file NAME as given on the command line,
+     *  relative to the working directory with "/" between directory
+     *  names. A NAME outside the working directory, or inside the git
+     *  directory, names no working file. */
+    public static String path(String name) {
+        Path path = Paths.get(name).normalize();
+        if (path.isAbsolute() || path.startsWith("..")
+                || path.startsWith(Repo.GIT.getName())) {
+            throw Utils.error("File does not exist.");
+        }
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    /** Returns the sorted paths of the working files named by NAME as
+     *  given on the command line. A NAME holding any of the glob
+     *  characters *?[{ names the files whose paths match it, where "*"
+     *  stays within one directory and "**" crosses directories. A NAME
+     *  that is a directory, such as ".", names every file under it. Any
+     *  other NAME names only its own path, whether it exists or not. */
+    public static List<String> expand(String name) {
+        String path = path(name);
+        ArrayList<String> paths = new ArrayList<>();
+        if (name.matches(".*[*?\\[{].*")) {
+            PathMatcher matcher =
+                FileSystems.getDefault().getPathMatcher("glob:" + path);
+            for (String f: files()) {
+                if (matcher.matches(Paths.get(f))) {
+                    paths.add(f);
+                }
+            }
+        } else if (file(path).isDirectory()) {
+            String prefix = path.isEmpty() ? "" : path + "/";
+            for (String f: files()) {
+                if (f.startsWith(prefix)) {
+                    paths.add(f);
+                }
+            }
+        } else {
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    /** Returns the File at the working path PATH. */
+    public static File file(String path) {
+        return Utils.join(Repo.WDIR, path);
+    }
+
+    /** Deletes the working file at PATH, along with any directories that
+     *  are left empty by it. Refuses to delete anything unless the
+     *  working directory contains a git directory. */
+    public static void delete(String path) {
+        if (!Repo.GIT.isDirectory()) {
+            throw new IllegalArgumentException("not .gitlet working directory");
+        }
+        File f = file(path);
+        if (f.isDirectory()) {
+            return;
+        }
+        f.delete();
+        File root = new File(Repo.WDIR);
+        File dir = f.getParentFile();
+        while (dir != null && !dir.equals(root)) {
+            String[] left = dir.list();
+            if (left == null || left.length > 0 || !dir.delete()) {
+                break;
+            }
+            dir = dir.getParentFile();
+        }
+    }
+
+}